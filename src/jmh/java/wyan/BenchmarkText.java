@@ -0,0 +1,37 @@
+package wyan;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * sample text of benchmarks generated by <code>CorpusGenerator</code>, the
+ * same text is generated for same seed.
+ * 
+ * @author wyan
+ *
+ */
+public class BenchmarkText {
+
+    /**
+     * generate a text.
+     * 
+     * @param length
+     *            number of chars at least.
+     * @param seed
+     *            random seed
+     * @return text
+     */
+    public static String generate(int length, long seed) {
+	return new CorpusGenerator(seed).generateChars(length);
+    }
+
+    /**
+     * size of a text in MB, encoded in UTF-8.
+     * 
+     * @param text
+     *            text
+     * @return UTF-8 size in MB.
+     */
+    public static double megabytes(String text) {
+	return text.getBytes(StandardCharsets.UTF_8).length / (double) (1 << 20);
+    }
+}
@@ -0,0 +1,29 @@
+package wyan;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * secondary results of a benchmark, reported by JMH as rates beside the
+ * operations per second.
+ * 
+ * A benchmark adds the UTF-8 size of the text it processed to
+ * <code>megabytes</code>, so it is reported in MB/s.
+ * 
+ * @author wyan
+ *
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+	megabytes = 0;
+    }
+}
@@ -0,0 +1,57 @@
+package wyan;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * end to end counting of top words.
+ * 
+ * @author wyan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordCounterBenchmark {
+
+    @Param({ "1048576" })
+    public int length;
+    @Param({ "100" })
+    public int n;
+
+    private String text;
+    private double megabytes;
+    private WordCounter counter = new WordCounter();
+
+    @Setup
+    public void setup() {
+	text = BenchmarkText.generate(length, 0);
+	megabytes = BenchmarkText.megabytes(text);
+    }
+
+    @Benchmark
+    public String[] count(Throughput t) {
+	t.megabytes += megabytes;
+	return counter.count(text, n);
+    }
+
+    @Benchmark
+    public String[] countParallel(Throughput t) {
+	t.megabytes += megabytes;
+	return counter.countParallel(text, n);
+    }
+}
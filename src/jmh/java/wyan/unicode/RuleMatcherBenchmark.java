@@ -0,0 +1,73 @@
+package wyan.unicode;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wyan.BenchmarkText;
+import wyan.Throughput;
+import wyan.unicode.rule.Rule.Event;
+import wyan.unicode.type.Type;
+
+/**
+ * break a text by searching rules for each character, as the word breaker
+ * did before the rules were compiled.
+ * 
+ * @author wyan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleMatcherBenchmark {
+
+    @Param({ "65536" })
+    public int length;
+
+    private Unicode unicode = Unicode.getDefault();
+    private RuleMatcher matcher = new RuleMatcher(unicode);
+    private String text;
+    private double megabytes;
+
+    @Setup
+    public void setup() {
+	text = BenchmarkText.generate(length, 0);
+	megabytes = BenchmarkText.megabytes(text);
+    }
+
+    @Benchmark
+    public int match(Throughput t) {
+	int breaks = 0;
+	Type type = Type.SOT;
+	int index = 0;
+	while (type != Type.EOT) {
+	    RuleMatcher.MatchResult r = matcher.match(text, index, type);
+	    Event event = r.rule == null ? Event.BREAK : r.rule.getEvent();
+	    if (event == Event.BREAK) {
+		breaks++;
+		type = r.type;
+	    } else {
+		Type target = event == Event.TRANS ? unicode.getType(r.rule.getTarget()) : r.type;
+		if (target != Type.ANY) {
+		    type = target;
+		}
+	    }
+	    index += r.size;
+	}
+	t.megabytes += megabytes;
+	return breaks;
+    }
+}
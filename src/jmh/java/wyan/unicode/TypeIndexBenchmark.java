@@ -0,0 +1,67 @@
+package wyan.unicode;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wyan.BenchmarkText;
+import wyan.Throughput;
+
+/**
+ * type lookup of every code point in a text.
+ * 
+ * @author wyan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeIndexBenchmark {
+
+    @Param({ "1048576" })
+    public int length;
+
+    private TypeIndex index = Unicode.getDefault().getTypeIndex();
+    private int[] cps;
+    private double megabytes;
+
+    @Setup
+    public void setup() {
+	String text = BenchmarkText.generate(length, 0);
+	cps = text.codePoints().toArray();
+	megabytes = BenchmarkText.megabytes(text);
+    }
+
+    @Benchmark
+    public int getType(Throughput t) {
+	int sum = 0;
+	for (int cp : cps) {
+	    sum += index.getType(cp).getName().length();
+	}
+	t.megabytes += megabytes;
+	return sum;
+    }
+
+    @Benchmark
+    public int getTypeOrdinal(Throughput t) {
+	int sum = 0;
+	for (int cp : cps) {
+	    sum += index.getTypeOrdinal(cp);
+	}
+	t.megabytes += megabytes;
+	return sum;
+    }
+}
@@ -0,0 +1,89 @@
+package wyan.unicode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wyan.BenchmarkText;
+import wyan.Throughput;
+
+/**
+ * break a text into words by the compiled rules, as strings, as spans of
+ * chars and as spans of UTF-8 bytes. The spans are also broken with
+ * <code>BreakMetrics</code> to see the cost of counting.
+ * 
+ * @author wyan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordBreakerBenchmark {
+
+    @Param({ "1048576" })
+    public int length;
+
+    private WordBreaker wb = WordBreaker.getDefaultInstance();
+    private WordBreaker metricsWb = new WordBreaker(Unicode.getDefault(), new BreakMetrics(Unicode.getDefault()));
+    private String text;
+    private ByteBuffer bytes;
+    private double megabytes;
+
+    @Setup
+    public void setup() {
+	text = BenchmarkText.generate(length, 0);
+	bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+	megabytes = BenchmarkText.megabytes(text);
+    }
+
+    @Benchmark
+    public int iterator(Throughput t) {
+	int words = 0;
+	Iterator<String> iter = wb.iterator(text);
+	while (iter.hasNext()) {
+	    words += iter.next().length();
+	}
+	t.megabytes += megabytes;
+	return words;
+    }
+
+    @Benchmark
+    public int forEachSpan(Throughput t) {
+	int[] words = new int[1];
+	wb.forEachSpan(text, (s, start, end, kind) -> words[0] += end - start);
+	t.megabytes += megabytes;
+	return words[0];
+    }
+
+    @Benchmark
+    public int forEachSpanMetrics(Throughput t) {
+	int[] words = new int[1];
+	metricsWb.forEachSpan(text, (s, start, end, kind) -> words[0] += end - start);
+	t.megabytes += megabytes;
+	return words[0];
+    }
+
+    @Benchmark
+    public int forEachSpanBytes(Throughput t) {
+	int[] words = new int[1];
+	wb.forEachSpan(bytes, (b, start, end, kind) -> words[0] += end - start);
+	t.megabytes += megabytes;
+	return words[0];
+    }
+}
@@ -0,0 +1,87 @@
+package wyan.unicode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wyan.BenchmarkText;
+import wyan.Throughput;
+import wyan.util.CharSpan;
+
+/**
+ * normalize all words of a text, as strings and as spans.
+ * 
+ * @author wyan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordNormalizerBenchmark {
+
+    @Param({ "1048576" })
+    public int length;
+
+    private IWordNormalizer wn = new WordNormalizer();
+    private String text;
+    private String[] words;
+    private int[] starts;
+    private double megabytes;
+
+    @Setup
+    public void setup() {
+	text = BenchmarkText.generate(length, 0);
+	List<String> list = new ArrayList<>();
+	Iterator<String> iter = WordBreaker.getDefaultInstance().iterator(text);
+	while (iter.hasNext()) {
+	    list.add(iter.next());
+	}
+	words = list.toArray(new String[list.size()]);
+	starts = new int[words.length + 1];
+	for (int i = 0; i < words.length; i++) {
+	    starts[i + 1] = starts[i] + words[i].length();
+	}
+	megabytes = BenchmarkText.megabytes(text);
+    }
+
+    @Benchmark
+    public int normalizeString(Throughput t) {
+	int kept = 0;
+	for (String w : words) {
+	    if (wn.normalize(w) != null) {
+		kept++;
+	    }
+	}
+	t.megabytes += megabytes;
+	return kept;
+    }
+
+    @Benchmark
+    public int normalizeSpan(Throughput t) {
+	int kept = 0;
+	CharSpan span = new CharSpan();
+	for (int i = 0; i < words.length; i++) {
+	    if (wn.normalize(span.set(text, starts[i], starts[i + 1])) != null) {
+		kept++;
+	    }
+	}
+	t.megabytes += megabytes;
+	return kept;
+    }
+}
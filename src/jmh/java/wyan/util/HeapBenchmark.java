@@ -0,0 +1,97 @@
+package wyan.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * offer counts into a bounded heap and poll them all, the throughput is
+ * reported as elements offered per second.
+ * 
+ * @author wyan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeapBenchmark {
+
+    @Param({ "100", "10000" })
+    public int size;
+    @Param({ "1000000" })
+    public int offers;
+
+    /**
+     * number of elements offered, reported as elements per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Elements {
+
+	public long elements;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+	    elements = 0;
+	}
+    }
+
+    private int[] counts;
+    private Integer[] boxed;
+
+    @Setup
+    public void setup() {
+	Random random = new Random(0);
+	counts = new int[offers];
+	boxed = new Integer[offers];
+	for (int i = 0; i < offers; i++) {
+	    // skewed counts as words
+	    counts[i] = (int) (1 / (random.nextDouble() + 1e-6));
+	    boxed[i] = counts[i];
+	}
+    }
+
+    @Benchmark
+    public long heap(Elements t) {
+	Heap<Integer> heap = new Heap<>(size);
+	for (Integer c : boxed) {
+	    heap.offer(c);
+	}
+	long sum = 0;
+	while (!heap.isEmpty()) {
+	    sum += heap.poll();
+	}
+	t.elements += offers;
+	return sum;
+    }
+
+    @Benchmark
+    public long intHeap(Elements t) {
+	IntHeap heap = new IntHeap(size);
+	for (int i = 0; i < counts.length; i++) {
+	    heap.offer(counts[i], i);
+	}
+	long sum = 0;
+	while (!heap.isEmpty()) {
+	    sum += heap.poll();
+	}
+	t.elements += offers;
+	return sum;
+    }
+}
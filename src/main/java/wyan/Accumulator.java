@@ -0,0 +1,79 @@
+package wyan;
+
+import java.util.function.Consumer;
+
+import wyan.util.RankTable;
+
+/**
+ * counts of texts added so far, the top words can be read at any moment.
+ * 
+ * Each text is broken separately, so a word never crosses two texts. The
+ * words are kept ordered by count while they are added, reading the top
+ * n words does not scan the whole table. A accumulator is not thread
+ * safe.
+ * 
+ * @see WordCounter#accumulator()
+ * @author wyan
+ *
+ */
+public class Accumulator {
+
+    private RankTable counts = new RankTable();
+    private Consumer<CharSequence> counter;
+
+    Accumulator(WordCounter owner) {
+	this.counter = owner.counter(counts);
+    }
+
+    /**
+     * count words of a text.
+     * 
+     * @param text
+     *            text to be process, may be null.
+     */
+    public void add(CharSequence text) {
+	if (text != null) {
+	    counter.accept(text);
+	}
+    }
+
+    /**
+     * return n words with highest occurrences so far, words with same
+     * count are ordered by first occurrence.
+     * 
+     * @param n
+     *            number of word returned.
+     * @return words with highest n occurrences.
+     */
+    public String[] topN(int n) {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	int[] ids = counts.top(n);
+	String[] words = new String[ids.length];
+	for (int i = 0; i < words.length; i++) {
+	    words[i] = counts.getWord(ids[i]);
+	}
+	return words;
+    }
+
+    /**
+     * add all counts of another accumulator, its words occur after the
+     * words of this one.
+     * 
+     * @param other
+     *            accumulator to be merged, it is not changed.
+     */
+    public void merge(Accumulator other) {
+	counts.addAll(other.counts);
+    }
+
+    /**
+     * number of distinct words.
+     * 
+     * @return size of the accumulator.
+     */
+    public int size() {
+	return counts.size();
+    }
+}
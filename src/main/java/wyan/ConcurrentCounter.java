@@ -0,0 +1,161 @@
+package wyan;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import wyan.util.CountTable;
+import wyan.util.Heap;
+import wyan.util.SpanTable;
+
+/**
+ * counts of texts added by many threads.
+ * 
+ * Each thread counts its texts into its own count table first, the table
+ * is flushed into a shared map of <code>LongAdder</code> after
+ * <code>FLUSH_SIZE</code> words. So a hot word such as "the" only updates
+ * the shared counter once per flush of each thread, and the updates of
+ * different threads are striped by the adder.
+ * 
+ * Words not flushed yet are not visible to <code>topN</code>, a thread
+ * should call <code>flush()</code> when it finishes adding texts.
+ * 
+ * Each word gets a sequence number when it is first flushed, words with
+ * same count are ordered by it. So the order is the first occurrence for
+ * texts added by one thread, same as other counters, texts added by
+ * different threads are ordered by the time they are flushed.
+ * 
+ * @see WordCounter#concurrentCounter()
+ * @author wyan
+ *
+ */
+public class ConcurrentCounter {
+
+    /**
+     * number of words counted by a thread before flush.
+     */
+    public static final int FLUSH_SIZE = 1 << 13;
+
+    private ConcurrentHashMap<String, SharedCount> counts = new ConcurrentHashMap<>();
+    private AtomicLong sequence = new AtomicLong();
+    private ThreadLocal<LocalCounts> locals = ThreadLocal.withInitial(LocalCounts::new);
+    private WordCounter owner;
+
+    ConcurrentCounter(WordCounter owner) {
+	this.owner = owner;
+    }
+
+    /**
+     * count words of a text, it is safe to be called by many threads.
+     * 
+     * @param text
+     *            text to be process, may be null.
+     */
+    public void add(CharSequence text) {
+	if (text != null) {
+	    LocalCounts local = locals.get();
+	    local.counter.accept(text);
+	    if (local.words >= FLUSH_SIZE) {
+		local.flush();
+	    }
+	}
+    }
+
+    /**
+     * flush words counted by current thread to shared counts.
+     */
+    public void flush() {
+	locals.get().flush();
+    }
+
+    /**
+     * occurrences of a word flushed by all threads.
+     * 
+     * @param word
+     *            normalized word
+     * @return count of the word.
+     */
+    public long getCount(String word) {
+	SharedCount shared = counts.get(word);
+	return shared == null ? 0 : shared.count.sum();
+    }
+
+    /**
+     * return n words with highest occurrences flushed by all threads, words
+     * with same count are ordered by the first flush.
+     * 
+     * The counts are read while other threads add words, so the result
+     * is a snapshot of recent counts.
+     * 
+     * @param n
+     *            number of word returned.
+     * @return words with highest n occurrences.
+     */
+    public String[] topN(int n) {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	Comparator<Map.Entry<SharedCount, Long>> order = Map.Entry.comparingByValue();
+	Heap<Map.Entry<SharedCount, Long>> heap = new Heap<>(n,
+		order.thenComparing(e -> e.getKey().order, Comparator.reverseOrder()));
+	counts.forEach((word, shared) -> heap.offer(new SimpleImmutableEntry<>(shared, shared.count.sum())));
+	String[] words = new String[heap.size()];
+	for (int i = 0; i < words.length; i++) {
+	    words[i] = heap.poll().getKey().word;
+	}
+	return words;
+    }
+
+    /**
+     * shared count of a word.
+     */
+    private class SharedCount {
+
+	private final String word;
+	/**
+	 * sequence number of the first flush.
+	 */
+	private final long order;
+	private final LongAdder count = new LongAdder();
+
+	SharedCount(String word, long order) {
+	    this.word = word;
+	    this.order = order;
+	}
+    }
+
+    /**
+     * words counted by a thread but not flushed.
+     */
+    private class LocalCounts {
+
+	private CountTable table = new CountTable();
+	private int words;
+	private Consumer<CharSequence> counter = owner.counter(new SpanTable() {
+	    @Override
+	    public int add(CharSequence text, int start, int end) {
+		words++;
+		return table.add(text, start, end);
+	    }
+
+	    @Override
+	    public int add(char[] chars, int start, int end) {
+		words++;
+		return table.add(chars, start, end);
+	    }
+	});
+
+	void flush() {
+	    for (int id = 0; id < table.size(); id++) {
+		counts.computeIfAbsent(table.getWord(id), w -> new SharedCount(w, sequence.getAndIncrement())).count
+			.add(table.getCount(id));
+	    }
+	    table.clear();
+	    words = 0;
+	}
+    }
+}
@@ -0,0 +1,328 @@
+package wyan;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * generate random text like natural language for performance testing.
+ * 
+ * Each script has its own vocabulary, the words are drawn by a Zipf
+ * distribution so a few words occur very often and most words are rare. The
+ * scripts are mixed by weights, and the words are joined by spaces,
+ * punctuations and line breaks. The scripts cover the word break rules of
+ * real text:
+ * <ul>
+ * <li>LATIN: lower and capitalized words, contractions such as
+ * <code>don't</code> (WB6, WB7).</li>
+ * <li>CJK: ideographs, each is a word.</li>
+ * <li>KATAKANA: katakana words (WB13).</li>
+ * <li>HEBREW: hebrew words, some with gershayim quote (WB7b, WB7c).</li>
+ * <li>ARABIC: arabic words.</li>
+ * <li>NUMERIC: numbers with group and decimal separators (WB11, WB12).</li>
+ * </ul>
+ * 
+ * The same seed and settings always generate the same text.
+ * 
+ * @author wyan
+ *
+ */
+public class CorpusGenerator {
+
+    public enum Script {
+	LATIN, CJK, KATAKANA, HEBREW, ARABIC, NUMERIC
+    }
+
+    private long seed;
+    private int vocabulary = 50000;
+    private double exponent = 1.0;
+    private int[] weights = { 80, 5, 3, 3, 3, 6 };
+    private String lineBreak = "\n";
+
+    private Random random;
+    private String[][] words;
+    /**
+     * cumulative probability of each rank.
+     */
+    private double[] ranks;
+    private int[] scripts;
+
+    /**
+     * create a generator with default settings: 50000 words of each script,
+     * Zipf exponent 1.0, mostly latin text and LF line breaks.
+     * 
+     * @param seed
+     *            random seed.
+     */
+    public CorpusGenerator(long seed) {
+	this.seed = seed;
+    }
+
+    /**
+     * set number of distinct words of each script.
+     * 
+     * @param vocabulary
+     *            size of vocabulary
+     * @return this generator.
+     */
+    public CorpusGenerator vocabulary(int vocabulary) {
+	if (vocabulary <= 0) {
+	    throw new IllegalArgumentException("vocabulary must be greater than 0");
+	}
+	this.vocabulary = vocabulary;
+	return this;
+    }
+
+    /**
+     * set exponent of the Zipf distribution, the word of rank r occurs in
+     * proportion to <code>1 / r^exponent</code>.
+     * 
+     * @param exponent
+     *            exponent, 0 for uniform distribution.
+     * @return this generator.
+     */
+    public CorpusGenerator exponent(double exponent) {
+	if (exponent < 0) {
+	    throw new IllegalArgumentException("exponent must not be negative");
+	}
+	this.exponent = exponent;
+	return this;
+    }
+
+    /**
+     * set weight of a script, words of a script are drawn in proportion to
+     * its weight.
+     * 
+     * @param script
+     *            script
+     * @param weight
+     *            weight, 0 if the script is not used.
+     * @return this generator.
+     */
+    public CorpusGenerator weight(Script script, int weight) {
+	if (weight < 0) {
+	    throw new IllegalArgumentException("weight must not be negative");
+	}
+	weights[script.ordinal()] = weight;
+	return this;
+    }
+
+    /**
+     * set line break, such as "\n" or "\r\n".
+     * 
+     * @param lineBreak
+     *            line break
+     * @return this generator.
+     */
+    public CorpusGenerator lineBreak(String lineBreak) {
+	this.lineBreak = lineBreak;
+	return this;
+    }
+
+    /**
+     * generate a text.
+     * 
+     * @param count
+     *            number of words
+     * @return text contains the words.
+     */
+    public String generate(int count) {
+	StringBuilder sb = new StringBuilder(count * 8);
+	prepare();
+	for (int i = 0; i < count; i++) {
+	    appendWord(sb);
+	}
+	return sb.toString();
+    }
+
+    /**
+     * generate a text of a length.
+     * 
+     * @param length
+     *            number of chars at least.
+     * @return text of words.
+     */
+    public String generateChars(int length) {
+	StringBuilder sb = new StringBuilder(length + 64);
+	prepare();
+	while (sb.length() < length) {
+	    appendWord(sb);
+	}
+	return sb.toString();
+    }
+
+    /**
+     * write a UTF-8 text into a file.
+     * 
+     * @param file
+     *            file to be written, it is replaced if exists.
+     * @param size
+     *            number of bytes at least.
+     * @throws IOException
+     *             file can not be written.
+     */
+    public void write(Path file, long size) throws IOException {
+	prepare();
+	StringBuilder sb = new StringBuilder(1 << 16);
+	long written = 0;
+	try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+	    while (written < size) {
+		sb.setLength(0);
+		while (sb.length() < 1 << 15) {
+		    appendWord(sb);
+		}
+		writer.append(sb);
+		written += sb.toString().getBytes(StandardCharsets.UTF_8).length;
+	    }
+	}
+    }
+
+    /**
+     * build vocabularies and distributions, the random generator is restarted
+     * so each text starts from the seed.
+     */
+    private void prepare() {
+	Random vocabularyRandom = new Random(seed);
+	if (words == null || words[0].length != vocabulary) {
+	    words = new String[Script.values().length][];
+	    for (Script script : Script.values()) {
+		words[script.ordinal()] = vocabulary(script, vocabularyRandom);
+	    }
+	}
+	ranks = new double[vocabulary];
+	double sum = 0;
+	for (int r = 0; r < vocabulary; r++) {
+	    sum += 1 / Math.pow(r + 1, exponent);
+	    ranks[r] = sum;
+	}
+	for (int r = 0; r < vocabulary; r++) {
+	    ranks[r] /= sum;
+	}
+	scripts = new int[Arrays.stream(weights).sum()];
+	if (scripts.length == 0) {
+	    throw new IllegalStateException("no script is used");
+	}
+	for (int s = 0, i = 0; s < weights.length; s++) {
+	    for (int w = 0; w < weights[s]; w++) {
+		scripts[i++] = s;
+	    }
+	}
+	random = new Random(seed);
+    }
+
+    /**
+     * distinct words of a script, in order of rank.
+     */
+    private String[] vocabulary(Script script, Random random) {
+	Set<String> set = new LinkedHashSet<>();
+	StringBuilder sb = new StringBuilder();
+	while (set.size() < vocabulary) {
+	    sb.setLength(0);
+	    // common words are short
+	    int length = 1 + (int) Math.min(12, Math.log(set.size() + 2) * 0.8 + random.nextInt(3));
+	    switch (script) {
+	    case LATIN:
+		appendLetters(sb, random, 'a', 26, length + 1);
+		if (random.nextInt(20) == 0) {
+		    sb.insert(sb.length() - 1, '\'');
+		}
+		break;
+	    case CJK:
+		appendLetters(sb, random, 0x4E00, 0x5200, Math.min(length, 3));
+		break;
+	    case KATAKANA:
+		appendLetters(sb, random, 0x30A1, 0x5A, length + 1);
+		break;
+	    case HEBREW:
+		appendLetters(sb, random, 0x05D0, 27, length + 1);
+		if (random.nextInt(10) == 0) {
+		    sb.insert(sb.length() - 1, '"');
+		}
+		break;
+	    case ARABIC:
+		appendLetters(sb, random, 0x0627, 0x24, length + 1);
+		break;
+	    case NUMERIC:
+		sb.append(1 + random.nextInt(999));
+		for (int i = random.nextInt(3); i > 0; i--) {
+		    sb.append(',').append(String.format("%03d", random.nextInt(1000)));
+		}
+		if (random.nextBoolean()) {
+		    sb.append('.').append(random.nextInt(100));
+		}
+		break;
+	    default:
+		throw new IllegalStateException("unknown script:" + script);
+	    }
+	    set.add(sb.toString());
+	}
+	return set.toArray(new String[set.size()]);
+    }
+
+    private static void appendLetters(StringBuilder sb, Random random, int first, int count, int length) {
+	for (int i = 0; i < length; i++) {
+	    sb.append((char) (first + random.nextInt(count)));
+	}
+    }
+
+    /**
+     * append a word and the separator after it.
+     */
+    private void appendWord(StringBuilder sb) {
+	int script = scripts[random.nextInt(scripts.length)];
+	int rank = Arrays.binarySearch(ranks, random.nextDouble());
+	String word = words[script][rank < 0 ? Math.min(-rank - 1, vocabulary - 1) : rank];
+	if (script == Script.LATIN.ordinal() && random.nextInt(10) == 0) {
+	    sb.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+	} else {
+	    sb.append(word);
+	}
+	int separator = random.nextInt(100);
+	if (separator < 4) {
+	    sb.append(", ");
+	} else if (separator < 9) {
+	    sb.append(". ");
+	} else if (separator < 11) {
+	    sb.append('.').append(lineBreak);
+	} else {
+	    sb.append(' ');
+	}
+    }
+
+    /**
+     * write a corpus file.
+     * 
+     * It accepts arguments [FILE NAME] [SIZE MB] [SEED] [VOCABULARY]
+     * [EXPONENT], the last three are optional. Use system property
+     * <code>crlf=true</code> for CRLF line breaks.
+     * 
+     * @param args
+     *            arguments of the application
+     * @throws IOException
+     *             file can not be written
+     */
+    public static void main(String[] args) throws IOException {
+	if (args == null || args.length < 2 || args.length > 5) {
+	    System.out.println("CorpusGenerator <file_name> <size_mb> [seed] [vocabulary] [exponent]");
+	    System.exit(-1);
+	}
+	CorpusGenerator generator = new CorpusGenerator(args.length > 2 ? Long.parseLong(args[2]) : 0);
+	if (args.length > 3) {
+	    generator.vocabulary(Integer.parseInt(args[3]));
+	}
+	if (args.length > 4) {
+	    generator.exponent(Double.parseDouble(args[4]));
+	}
+	if (Boolean.getBoolean("crlf")) {
+	    generator.lineBreak("\r\n");
+	}
+	generator.write(Paths.get(args[0]), Long.parseLong(args[1]) << 20);
+    }
+}
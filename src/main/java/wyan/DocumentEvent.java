@@ -0,0 +1,73 @@
+package wyan;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * flight recorder event of counting a document.
+ * 
+ * The event lasts the whole document. The stages are not run one after
+ * another, word breaking, normalizing and counting are interleaved word by
+ * word, so the time of each stage is a field of the event.
+ * 
+ * @see StageProfile
+ * @author wyan
+ *
+ */
+@Name("wyan.Document")
+@Label("Word Count Document")
+@Category("Word Count")
+@Description("Time spent in each stage of counting a document")
+@StackTrace(false)
+class DocumentEvent extends jdk.jfr.Event {
+
+    @Label("Document")
+    String document;
+
+    @Label("Read Time")
+    @Description("Time reading the stream and decoding UTF-8")
+    @Timespan(Timespan.NANOSECONDS)
+    long readTime;
+
+    @Label("Segment Time")
+    @Description("Time breaking words, the rest of the pass")
+    @Timespan(Timespan.NANOSECONDS)
+    long segmentTime;
+
+    @Label("Normalize Time")
+    @Description("Time normalizing words, estimated from sampled words")
+    @Timespan(Timespan.NANOSECONDS)
+    long normalizeTime;
+
+    @Label("Count Time")
+    @Description("Time adding words to the count table, estimated from sampled words")
+    @Timespan(Timespan.NANOSECONDS)
+    long countTime;
+
+    @Label("Select Time")
+    @Description("Time selecting top N words, 0 for a file in a batch")
+    @Timespan(Timespan.NANOSECONDS)
+    long selectTime;
+
+    @Label("Bytes")
+    @Description("Bytes of a file, 0 for a text")
+    @DataAmount(DataAmount.BYTES)
+    long bytes;
+
+    @Label("Chars")
+    @Description("Chars of a text, 0 for a file")
+    long chars;
+
+    @Label("Tokens")
+    @Description("Words generated by the word breaker")
+    long tokens;
+
+    @Label("Distinct Words")
+    @Description("Distinct words of the document")
+    long words;
+}
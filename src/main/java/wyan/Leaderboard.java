@@ -0,0 +1,87 @@
+package wyan;
+
+import java.util.function.Consumer;
+
+import wyan.util.CountTable;
+import wyan.util.IndexedHeap;
+import wyan.util.SpanTable;
+
+/**
+ * n words with highest occurrences of texts added so far, updated for
+ * every word.
+ * 
+ * The words are counted in a count table, and the new count of each word
+ * is offered to a indexed heap of n words. A word on the board only
+ * increases its key, a word not on the board replaces the lowest one once
+ * its count is higher. So the board is always exact and costs
+ * O(log(n)) for each word. A leaderboard is not thread safe.
+ * 
+ * @see WordCounter#leaderboard(int)
+ * @author wyan
+ *
+ */
+public class Leaderboard {
+
+    private CountTable counts = new CountTable();
+    private IndexedHeap heap;
+    private Consumer<CharSequence> counter;
+
+    Leaderboard(WordCounter owner, int n) {
+	this.heap = new IndexedHeap(n);
+	this.counter = owner.counter(new SpanTable() {
+	    @Override
+	    public int add(CharSequence text, int start, int end) {
+		return offer(counts.add(text, start, end));
+	    }
+
+	    @Override
+	    public int add(char[] chars, int start, int end) {
+		return offer(counts.add(chars, start, end));
+	    }
+	});
+    }
+
+    private int offer(int id) {
+	heap.offer(id, counts.getCount(id));
+	return id;
+    }
+
+    /**
+     * count words of a text.
+     * 
+     * @param text
+     *            text to be process, may be null.
+     */
+    public void add(CharSequence text) {
+	if (text != null) {
+	    counter.accept(text);
+	}
+    }
+
+    /**
+     * test if a word is on the leaderboard.
+     * 
+     * @param word
+     *            normalized word
+     * @return true if the word is one of the top n words.
+     */
+    public boolean contains(String word) {
+	int id = counts.find(word, 0, word.length());
+	return id >= 0 && heap.contains(id);
+    }
+
+    /**
+     * words on the leaderboard, words with same count are ordered by
+     * first occurrence.
+     * 
+     * @return words with highest n occurrences.
+     */
+    public String[] top() {
+	int[] ids = heap.toSortedArray();
+	String[] words = new String[ids.length];
+	for (int i = 0; i < words.length; i++) {
+	    words[i] = counts.getWord(ids[i]);
+	}
+	return words;
+    }
+}
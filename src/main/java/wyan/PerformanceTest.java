@@ -1,25 +1,14 @@
 package wyan;
 
-import java.util.Random;
-
 public class PerformanceTest {
 
-    private String randomWords(int numberOfWords) {
-	StringBuilder sb = new StringBuilder();
-	Random random = new Random();
-	for (int i = 0; i < numberOfWords; i++) {
-	    char[] word = new char[random.nextInt(8) + 3];
-	    for (int j = 0; j < word.length; j++) {
-		word[j] = (char) ('a' + random.nextInt(26));
-	    }
-	    sb.append(" ");
-	    sb.append(word);
-	}
-	return sb.toString();
-    }
+    /**
+     * same corpus for each run, so the results can be compared.
+     */
+    private CorpusGenerator generator = new CorpusGenerator(0);
 
     private long run(int count) {
-	String text = randomWords(count);
+	String text = generator.generate(count);
 	long start = System.currentTimeMillis();
 	new WordCounter().count(text, 1000);
 	long end = System.currentTimeMillis();
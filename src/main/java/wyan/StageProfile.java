@@ -0,0 +1,208 @@
+package wyan;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * time spent in each stage of counting a document, emitted as a flight
+ * recorder event.
+ * 
+ * The word breaker, normalizer and count table run in one pass over the text,
+ * a clock read around each word would cost more than the word itself. So
+ * only one word in <code>SAMPLE_RATE</code> is timed, the time of decoding,
+ * normalizing and counting is estimated from the sampled words, the rest of
+ * the pass is word breaking. The cost of reading the clock is measured once
+ * and removed from each sample, it is close to the time of a short word.
+ * Reading a stream is timed by each read of the
+ * window, and selecting top N words is timed as a whole.
+ * 
+ * One <code>DocumentEvent</code> lasts the whole document and is committed at
+ * the end of it, with the time of each stage as a field. A profile is only
+ * created while a recording enables the event, and never on a JVM without
+ * flight recorder.
+ * 
+ * @author wyan
+ *
+ */
+class StageProfile {
+
+    /**
+     * one word in the rate is timed, a power of 2.
+     */
+    static final int SAMPLE_RATE = 64;
+
+    private static final boolean AVAILABLE = isAvailable();
+    /**
+     * average nanoseconds between two clock reads.
+     */
+    private static final long CLOCK_COST = clockCost();
+
+    private static boolean isAvailable() {
+	try {
+	    Class.forName("jdk.jfr.FlightRecorder");
+	    return true;
+	} catch (ClassNotFoundException | LinkageError ex) {
+	    return false;
+	}
+    }
+
+    private static long clockCost() {
+	int rounds = 1 << 14;
+	long begin = System.nanoTime();
+	long last = begin;
+	for (int i = 0; i < rounds; i++) {
+	    last = System.nanoTime();
+	}
+	return (last - begin) / rounds;
+    }
+
+    /**
+     * start profiling a document.
+     * 
+     * @param document
+     *            name of the document
+     * @return profile of the document, null if the events are not recorded.
+     */
+    static StageProfile start(String document) {
+	if (!AVAILABLE || !new DocumentEvent().isEnabled()) {
+	    return null;
+	}
+	return new StageProfile(document);
+    }
+
+    private final String document;
+    private final long start;
+    private long passEnd;
+    private long bytes;
+    private long chars;
+    private long tokens;
+    private long sampled;
+    private long words;
+    private long read;
+    private long decode;
+    private long normalize;
+    private long count;
+    private final DocumentEvent event;
+
+    private StageProfile(String document) {
+	this.document = document;
+	this.event = new DocumentEvent();
+	this.event.begin();
+	this.start = System.nanoTime();
+    }
+
+    /**
+     * count the size of a file.
+     * 
+     * @param size
+     *            bytes of the file
+     */
+    void addBytes(long size) {
+	bytes += size;
+    }
+
+    /**
+     * count the size of a text.
+     * 
+     * @param size
+     *            chars of the text
+     */
+    void addChars(long size) {
+	chars += size;
+    }
+
+    /**
+     * count a word and test if it should be timed.
+     * 
+     * @return true if the word is sampled.
+     */
+    boolean sample() {
+	return (tokens++ & (SAMPLE_RATE - 1)) == 0;
+    }
+
+    /**
+     * add the times of a sampled word.
+     * 
+     * @param decode
+     *            time decoding UTF-8 bytes, 0 if not decoded
+     * @param normalize
+     *            time normalizing the word
+     * @param count
+     *            time adding the word to count table
+     */
+    void addSample(long decode, long normalize, long count) {
+	sampled++;
+	this.decode += Math.max(0, decode - CLOCK_COST);
+	this.normalize += Math.max(0, normalize - CLOCK_COST);
+	this.count += Math.max(0, count - CLOCK_COST);
+    }
+
+    /**
+     * wrap a reader to time reading and decoding the stream.
+     * 
+     * @param reader
+     *            stream to be read
+     * @return reader counts the time and chars of each read.
+     */
+    Reader reader(Reader reader) {
+	return new FilterReader(reader) {
+	    @Override
+	    public int read(char[] cbuf, int off, int len) throws IOException {
+		long begin = System.nanoTime();
+		int size = super.read(cbuf, off, len);
+		read += System.nanoTime() - begin;
+		if (size > 0) {
+		    chars += size;
+		}
+		return size;
+	    }
+	};
+    }
+
+    /**
+     * end of the pass over the text.
+     * 
+     * @param words
+     *            number of distinct words counted
+     */
+    void endPass(int words) {
+	this.passEnd = System.nanoTime();
+	this.words = words;
+    }
+
+    /**
+     * end of top N selection, commit the event of the document.
+     */
+    void endSelect() {
+	commit(System.nanoTime() - passEnd);
+    }
+
+    /**
+     * end of a document without selection, such as a file in a batch, commit
+     * the event of the document.
+     */
+    void end() {
+	commit(0);
+    }
+
+    private void commit(long select) {
+	event.end();
+	if (!event.shouldCommit()) {
+	    return;
+	}
+	double scale = sampled == 0 ? 0 : (double) tokens / sampled;
+	event.document = document;
+	event.readTime = read + (long) (decode * scale);
+	event.normalizeTime = (long) (normalize * scale);
+	event.countTime = (long) (count * scale);
+	event.segmentTime = Math.max(0,
+		passEnd - start - event.readTime - event.normalizeTime - event.countTime);
+	event.selectTime = select;
+	event.bytes = bytes;
+	event.chars = chars;
+	event.tokens = tokens;
+	event.words = words;
+	event.commit();
+    }
+}
@@ -0,0 +1,142 @@
+package wyan;
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import wyan.util.CountTable;
+import wyan.util.RankTable;
+import wyan.util.SpanTable;
+
+/**
+ * counts of texts added in a sliding window of time.
+ * 
+ * The window is a ring of buckets, each bucket is a count table of the
+ * texts added in its period, and a total table keeps the sum of all
+ * buckets. When the time moves to a new bucket, the oldest bucket is
+ * subtracted from the total and cleared, so expiring costs the size of
+ * the bucket instead of recounting the window. The total is a rank table,
+ * the words are kept ordered by count as they enter and leave the
+ * window, so reading the top n words only visits n words.
+ * 
+ * Words expired are kept in total table with count 0 but out of the
+ * ranking, the total is rebuilt from buckets when most of its words are
+ * expired. Words with same count are ordered by first occurrence since
+ * the total was built.
+ * 
+ * The methods are synchronized, so the top words can be read by other
+ * threads while texts are added.
+ * 
+ * @see WordCounter#window(long, int, LongSupplier)
+ * @author wyan
+ *
+ */
+public class Window {
+
+    private RankTable total = new RankTable();
+    private CountTable[] buckets;
+    private long bucketLength;
+    private LongSupplier clock;
+    /**
+     * time of the current bucket, divided by bucket length.
+     */
+    private long current;
+    private Consumer<CharSequence> counter;
+
+    Window(WordCounter owner, long length, int buckets, LongSupplier clock) {
+	this.buckets = new CountTable[buckets];
+	for (int i = 0; i < buckets; i++) {
+	    this.buckets[i] = new CountTable();
+	}
+	this.bucketLength = length / buckets;
+	this.clock = clock;
+	this.current = Math.floorDiv(clock.getAsLong(), bucketLength);
+	this.counter = owner.counter(new SpanTable() {
+	    @Override
+	    public int add(CharSequence text, int start, int end) {
+		bucket().add(text, start, end);
+		return total.add(text, start, end);
+	    }
+
+	    @Override
+	    public int add(char[] chars, int start, int end) {
+		bucket().add(chars, start, end);
+		return total.add(chars, start, end);
+	    }
+	});
+    }
+
+    private CountTable bucket() {
+	return buckets[(int) Math.floorMod(current, (long) buckets.length)];
+    }
+
+    /**
+     * count words of a text at current time.
+     * 
+     * @param text
+     *            text to be process, may be null.
+     */
+    public synchronized void add(CharSequence text) {
+	advance();
+	if (text != null) {
+	    counter.accept(text);
+	}
+    }
+
+    /**
+     * return n words with highest occurrences in the window.
+     * 
+     * @param n
+     *            number of word returned.
+     * @return words with highest n occurrences, words not in the window
+     *         are not returned.
+     */
+    public synchronized String[] topN(int n) {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	advance();
+	int[] ids = total.top(n);
+	String[] words = new String[ids.length];
+	for (int i = 0; i < ids.length; i++) {
+	    words[i] = total.getWord(ids[i]);
+	}
+	return words;
+    }
+
+    /**
+     * expire buckets older than the window.
+     */
+    private void advance() {
+	long now = Math.floorDiv(clock.getAsLong(), bucketLength);
+	if (now <= current) {
+	    return;
+	}
+	if (now - current >= buckets.length) {
+	    for (CountTable bucket : buckets) {
+		bucket.clear();
+	    }
+	    total.clear();
+	    current = now;
+	    return;
+	}
+	while (current < now) {
+	    current++;
+	    CountTable bucket = bucket();
+	    total.subtractAll(bucket);
+	    bucket.clear();
+	}
+	int live = 0;
+	for (CountTable bucket : buckets) {
+	    live += bucket.size();
+	}
+	if (total.size() > 2 * live + 1024) {
+	    // rebuild from the oldest bucket, the order is built once
+	    CountTable merged = new CountTable();
+	    for (int i = 1; i <= buckets.length; i++) {
+		merged.addAll(buckets[(int) Math.floorMod(current + i, (long) buckets.length)]);
+	    }
+	    total.clear();
+	    total.addAll(merged);
+	}
+    }
+}
@@ -1,22 +1,62 @@
 package wyan;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
+import wyan.unicode.ByteSpanConsumer;
 import wyan.unicode.IWordNormalizer;
+import wyan.unicode.SpanConsumer;
 import wyan.unicode.WordBreaker;
 import wyan.unicode.WordNormalizer;
-import wyan.util.Heap;
+import wyan.unicode.type.Type;
+import wyan.util.CharSpan;
+import wyan.util.CountMinSketch;
+import wyan.util.CountTable;
+import wyan.util.SpaceSaving;
+import wyan.util.SpanTable;
+import wyan.util.Utf8;
 
 /**
  * count the word in a document and output highest n words
+ * 
+ * Words with same occurrences are ordered by their first occurrence in the
+ * document.
+ * 
+ * While a flight recorder recording enables <code>wyan.Document</code>, a
+ * document counted by <code>count</code>, <code>countStream</code>,
+ * <code>countFile</code> or <code>countFiles</code> emits a event with the
+ * time of each stage, see <code>StageProfile</code>.
  *
  * @see <a href="http://unicode.org/reports/tr29/#Word_Boundaries">UNICODE WORD
  *      BOUNDARIES</a>
@@ -46,6 +86,11 @@ public class WordCounter {
 	this.wn = wn;
     }
 
+    /**
+     * number of characters counted by one task in parallel mode.
+     */
+    static final int CHUNK_SIZE = 1 << 20;
+
     /**
      * return n words with highest occurrences in document.
      * 
@@ -62,58 +107,886 @@ public class WordCounter {
 	if (text == null || text.length() == 0) {
 	    return new String[] {};
 	}
-	HashMap<String, WordCount> counts = new HashMap<>();
-	Iterator<String> iter = wb.iterator(text);
-	while (iter.hasNext()) {
-	    String w = iter.next();
-	    if (wn != null)
-		w = wn.normalize(w);
-	    if (w != null) {
-		WordCount c = counts.get(w);
-		if (c == null) {
-		    c = new WordCount(w);
-		    counts.put(w, c);
-		}
-		c.count++;
+	CountTable counts = new CountTable();
+	StageProfile profile = StageProfile.start("text");
+	if (profile == null) {
+	    wb.forEachSpan(text, new SpanCounter(counts));
+	    return count(counts, n);
+	}
+	profile.addChars(text.length());
+	wb.forEachSpan(text, new ProfiledCounter(counts, profile));
+	return count(counts, n, profile);
+    }
+
+    /**
+     * return n words with highest occurrences in document, the document is
+     * counted in parallel by the common fork/join pool.
+     * 
+     * The text is split after LF into chunks, each chunk is broken and
+     * counted in its own task, and the counts are merged in text order. So
+     * the result is same as <code>count(text, n)</code>.
+     * 
+     * @param text
+     *            text to be process.
+     * @param n
+     *            number of word returned.
+     * @return words with highest n occurrences.
+     */
+    public String[] countParallel(CharSequence text, int n) {
+	return countParallel(text, n, CHUNK_SIZE);
+    }
+
+    String[] countParallel(CharSequence text, int n, int chunk) {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	if (text == null || text.length() == 0) {
+	    return new String[] {};
+	}
+	CountTable counts = ForkJoinPool.commonPool().invoke(new CountTask(text, 0, text.length(), chunk));
+	return count(counts, n);
+    }
+
+    /**
+     * a task to count a range of text, it is split into two tasks after a LF
+     * if the range is larger than a chunk.
+     */
+    private class CountTask extends RecursiveTask<CountTable> {
+
+	private static final long serialVersionUID = 1L;
+
+	private CharSequence text;
+	private int start;
+	private int end;
+	private int chunk;
+
+	CountTask(CharSequence text, int start, int end, int chunk) {
+	    this.text = text;
+	    this.start = start;
+	    this.end = end;
+	    this.chunk = chunk;
+	}
+
+	@Override
+	protected CountTable compute() {
+	    int split = end - start > chunk ? wb.findSplit(text, start, end) : -1;
+	    if (split == -1) {
+		CountTable counts = new CountTable();
+		wb.forEachSpan(text, start, end, new SpanCounter(counts));
+		return counts;
 	    }
+	    CountTask head = new CountTask(text, start, split, chunk);
+	    head.fork();
+	    CountTable tail = new CountTask(text, split, end, chunk).compute();
+	    CountTable counts = head.join();
+	    // words of head are first
+	    counts.addAll(tail);
+	    return counts;
 	}
-	return count(counts.values(), n);
     }
 
-    static private class WordCount {
-	String word;
-	int count;
+    /**
+     * return n words with highest occurrences in a stream.
+     * 
+     * The text is read through a fixed size window, so the memory used only
+     * depends on the number of distinct words.
+     * 
+     * @param reader
+     *            text to be process, it is not closed.
+     * @param n
+     *            number of word returned.
+     * @return words with highest n occurrences.
+     * @throws IOException
+     *             text can not be read.
+     */
+    public String[] countStream(Reader reader, int n) throws IOException {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	CountTable counts = new CountTable();
+	StageProfile profile = StageProfile.start("stream");
+	if (profile == null) {
+	    wb.forEachSpan(reader, new SpanCounter(counts));
+	    return count(counts, n);
+	}
+	wb.forEachSpan(profile.reader(reader), new ProfiledCounter(counts, profile));
+	return count(counts, n, profile);
+    }
+
+    /**
+     * return n words with highest occurrences in a UTF-8 encoded file.
+     * 
+     * The file is mapped into memory and broken as UTF-8 bytes, only the
+     * words are decoded.
+     * 
+     * @param file
+     *            file to be process.
+     * @param n
+     *            number of word returned.
+     * @return words with highest n occurrences.
+     * @throws IOException
+     *             file can not be read.
+     */
+    public String[] countFile(Path file, int n) throws IOException {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	CountTable counts = new CountTable();
+	StageProfile profile = StageProfile.start(file.toString());
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	    if (profile == null) {
+		wb.forEachSpan(channel, new SpanCounter(counts));
+		return count(counts, n);
+	    }
+	    profile.addBytes(channel.size());
+	    wb.forEachSpan(channel, new ProfiledCounter(counts, profile));
+	}
+	return count(counts, n, profile);
+    }
+
+    /**
+     * create a accumulator to count a sequence of texts, such as messages.
+     * 
+     * @return a empty accumulator.
+     */
+    public Accumulator accumulator() {
+	return new Accumulator(this);
+    }
 
-	public WordCount(String word) {
+    /**
+     * create a leaderboard of n words with highest occurrences in a sequence
+     * of texts.
+     * 
+     * @param n
+     *            number of words on the leaderboard.
+     * @return a empty leaderboard.
+     */
+    public Leaderboard leaderboard(int n) {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	return new Leaderboard(this, n);
+    }
+
+    /**
+     * create a window to count words of texts added in the last period of
+     * time.
+     * 
+     * @param length
+     *            length of the window in milliseconds.
+     * @param buckets
+     *            number of buckets the window is divided into.
+     * @return a empty window.
+     */
+    public Window window(long length, int buckets) {
+	return window(length, buckets, System::currentTimeMillis);
+    }
+
+    /**
+     * create a window to count words of texts added in the last period of
+     * time.
+     * 
+     * @param length
+     *            length of the window, in unit of the clock.
+     * @param buckets
+     *            number of buckets the window is divided into.
+     * @param clock
+     *            current time.
+     * @return a empty window.
+     */
+    public Window window(long length, int buckets, LongSupplier clock) {
+	if (buckets <= 0 || length < buckets) {
+	    throw new IllegalArgumentException("invalid window:" + length + "/" + buckets);
+	}
+	return new Window(this, length, buckets, clock);
+    }
+
+    /**
+     * create a counter can be shared by threads.
+     * 
+     * @return a empty counter.
+     */
+    public ConcurrentCounter concurrentCounter() {
+	return new ConcurrentCounter(this);
+    }
+
+    /**
+     * return about n words with highest occurrences in a stream, the words
+     * are counted by a fixed number of counters.
+     * 
+     * The number of counters is computed from the memory, so the memory used
+     * does not grow with the number of distinct words. Each word is returned
+     * with the bounds of its occurrences, a word occurs more than
+     * <code>total / capacity</code> times is never missed. Words longer than
+     * <code>SpaceSaving.MAX_WORD_LENGTH</code> are not counted.
+     * 
+     * @param reader
+     *            text to be process, it is not closed.
+     * @param n
+     *            number of word returned.
+     * @param memory
+     *            bytes of memory used by counters.
+     * @return estimated words with highest n occurrences.
+     * @throws IOException
+     *             text can not be read.
+     */
+    public Estimate[] countApproximate(Reader reader, int n, long memory) throws IOException {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	SpaceSaving counts = new SpaceSaving(SpaceSaving.capacityOf(memory));
+	wb.forEachSpan(reader, new SpanCounter(counts));
+	return estimate(counts, n);
+    }
+
+    /**
+     * return about n words with highest occurrences in document, the words
+     * are counted by a fixed number of counters.
+     * 
+     * @param text
+     *            text to be process.
+     * @param n
+     *            number of word returned.
+     * @param memory
+     *            bytes of memory used by counters.
+     * @return estimated words with highest n occurrences.
+     * @see #countApproximate(Reader, int, long)
+     */
+    public Estimate[] countApproximate(CharSequence text, int n, long memory) {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	SpaceSaving counts = new SpaceSaving(SpaceSaving.capacityOf(memory));
+	wb.forEachSpan(text, new SpanCounter(counts));
+	return estimate(counts, n);
+    }
+
+    /**
+     * return n words with highest occurrences in a UTF-8 encoded file, the
+     * file is read twice to count exactly in limited memory.
+     * 
+     * The first pass adds all words into a Count-Min sketch and a few
+     * Space-Saving counters. The n-th highest lower bound of the counters is
+     * a threshold, at least n words occur not less than it. The second pass
+     * only counts the words estimated by the sketch not less than the
+     * threshold. The sketch never under estimates, so all words may be in
+     * top n are counted exactly, and their ids keep the order of first
+     * occurrence.
+     * 
+     * Half of the memory is used by the sketch, a quarter by the counters
+     * and a quarter by the candidates of the second pass, each sized by
+     * <code>capacityOf</code> of its part. If the memory is too small, the
+     * sketch is saturated or there are less counters than n, the threshold
+     * is too low to filter words and the candidates do not fit, the count
+     * fails instead of using more memory.
+     * 
+     * @param file
+     *            file to be process.
+     * @param n
+     *            number of word returned.
+     * @param memory
+     *            bytes of memory used by the sketch, the counters and the
+     *            candidates.
+     * @return words with highest n occurrences, same as
+     *         <code>countFile(file, n)</code>.
+     * @throws IOException
+     *             file can not be read.
+     * @throws IllegalStateException
+     *             the candidates of the second pass do not fit in memory.
+     * @see #countTwoPass(URL, int, long)
+     */
+    public String[] countTwoPass(Path file, int n, long memory) throws IOException {
+	return countTwoPass(counter -> {
+	    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+		wb.forEachSpan(channel, counter);
+	    }
+	}, n, memory);
+    }
+
+    /**
+     * return n words with highest occurrences in a UTF-8 encoded URL, the
+     * URL is downloaded once and read twice to count exactly in limited memory.
+     * 
+     * The URL is downloaded once into a temporary file and both passes read
+     * the file, so the passes always count the same content even if the
+     * resource changes. The file is deleted at last.
+     * 
+     * @param url
+     *            URL to be process, it is opened once.
+     * @param n
+     *            number of word returned.
+     * @param memory
+     *            bytes of memory used by the sketch, the counters and the
+     *            candidates.
+     * @return words with highest n occurrences, same as
+     *         <code>countStream(reader, n)</code>.
+     * @throws IOException
+     *             URL can not be read or the temporary file can not be
+     *             written.
+     * @throws IllegalStateException
+     *             the candidates of the second pass do not fit in memory.
+     * @see #countTwoPass(Path, int, long)
+     */
+    public String[] countTwoPass(URL url, int n, long memory) throws IOException {
+	try (InputStream in = url.openStream()) {
+	    return countTwoPass(in, n, memory);
+	}
+    }
+
+    /**
+     * copy a stream into a temporary file and count the file twice.
+     */
+    private String[] countTwoPass(InputStream in, int n, long memory) throws IOException {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	Path file = Files.createTempFile("wordcount", ".txt");
+	try {
+	    Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+	    return countTwoPass(file, n, memory);
+	} finally {
+	    Files.delete(file);
+	}
+    }
+
+    /**
+     * return n words with highest occurrences in many UTF-8 encoded files,
+     * the files are counted concurrently.
+     * 
+     * A fixed number of workers take files in order, each worker counts its
+     * files into its own count table as <code>countFile</code>. At last the
+     * tables are merged in the order of workers, so words with same count
+     * are ordered by first occurrence in a worker, not in the file list.
+     * Virtual threads are used as workers if the JVM supports them.
+     * 
+     * @param files
+     *            files to be process.
+     * @param n
+     *            number of word returned.
+     * @param threads
+     *            number of workers.
+     * @return words with highest n occurrences, and the throughput.
+     * @throws IOException
+     *             a file can not be read.
+     */
+    public BatchResult countFiles(List<Path> files, int n, int threads) throws IOException {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	if (threads <= 0) {
+	    throw new IllegalArgumentException("threads must be greater than 0");
+	}
+	long start = System.nanoTime();
+	AtomicInteger next = new AtomicInteger();
+	LongAdder bytes = new LongAdder();
+	ExecutorService workers = Executors.newFixedThreadPool(threads, workerFactory());
+	List<Future<CountTable>> futures = new ArrayList<>();
+	try {
+	    for (int i = 0; i < threads; i++) {
+		futures.add(workers.submit(() -> {
+		    CountTable counts = new CountTable();
+		    SpanCounter counter = new SpanCounter(counts);
+		    for (int f = next.getAndIncrement(); f < files.size(); f = next.getAndIncrement()) {
+			StageProfile profile = StageProfile.start(files.get(f).toString());
+			try (FileChannel channel = FileChannel.open(files.get(f), StandardOpenOption.READ)) {
+			    bytes.add(channel.size());
+			    if (profile == null) {
+				wb.forEachSpan(channel, counter);
+			    } else {
+				// a table of its own for the distinct words of the document
+				CountTable document = new CountTable();
+				profile.addBytes(channel.size());
+				wb.forEachSpan(channel, new ProfiledCounter(document, profile));
+				profile.endPass(document.size());
+				profile.end();
+				counts.addAll(document);
+			    }
+			}
+		    }
+		    return counts;
+		}));
+	    }
+	    CountTable counts = new CountTable();
+	    for (Future<CountTable> future : futures) {
+		counts.addAll(future.get());
+	    }
+	    return new BatchResult(count(counts, n), files.size(), bytes.sum(), System.nanoTime() - start);
+	} catch (InterruptedException ex) {
+	    Thread.currentThread().interrupt();
+	    throw new IOException("interrupted", ex);
+	} catch (ExecutionException ex) {
+	    if (ex.getCause() instanceof IOException) {
+		throw (IOException) ex.getCause();
+	    }
+	    throw new IllegalStateException(ex.getCause());
+	} finally {
+	    workers.shutdownNow();
+	}
+    }
+
+    /**
+     * thread factory of virtual threads, found by reflection as the project
+     * is built for Java 8. The default factory if virtual threads are not
+     * supported.
+     */
+    private static ThreadFactory workerFactory() {
+	try {
+	    Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+	    return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+	} catch (ReflectiveOperationException | RuntimeException ex) {
+	    return Executors.defaultThreadFactory();
+	}
+    }
+
+    /**
+     * find files of a directory or a glob pattern.
+     * 
+     * A directory is searched recursively for regular files. A pattern with
+     * any of <code>*?[{</code> is matched as a glob by
+     * <code>PathMatcher</code>, the files are searched from the directory
+     * before the first glob character. Other pattern is a single file.
+     * 
+     * @param pattern
+     *            directory, glob pattern or file.
+     * @return files found, in order of path.
+     * @throws IOException
+     *             directory can not be read.
+     */
+    public static List<Path> findFiles(String pattern) throws IOException {
+	int glob = 0;
+	while (glob < pattern.length() && "*?[{".indexOf(pattern.charAt(glob)) < 0) {
+	    glob++;
+	}
+	Path base;
+	PathMatcher matcher;
+	if (glob < pattern.length()) {
+	    String separator = FileSystems.getDefault().getSeparator();
+	    int end = Math.max(pattern.lastIndexOf('/', glob), pattern.lastIndexOf(separator, glob));
+	    base = Paths.get(end < 0 ? "" : pattern.substring(0, end + 1));
+	    matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+	} else {
+	    base = Paths.get(pattern);
+	    if (!Files.isDirectory(base)) {
+		return Collections.singletonList(base);
+	    }
+	    matcher = p -> true;
+	}
+	try (Stream<Path> paths = Files.walk(base)) {
+	    return paths.filter(p -> Files.isRegularFile(p) && matcher.matches(p)).sorted()
+		    .collect(Collectors.toList());
+	}
+    }
+
+    /**
+     * top words of a batch of files, and the throughput of counting.
+     */
+    public static class BatchResult {
+
+	private final String[] words;
+	private final int files;
+	private final long bytes;
+	private final long nanos;
+
+	BatchResult(String[] words, int files, long bytes, long nanos) {
+	    this.words = words;
+	    this.files = files;
+	    this.bytes = bytes;
+	    this.nanos = nanos;
+	}
+
+	public String[] getWords() {
+	    return words;
+	}
+
+	public int getFiles() {
+	    return files;
+	}
+
+	public long getBytes() {
+	    return bytes;
+	}
+
+	/**
+	 * time used to count and merge.
+	 * 
+	 * @return elapsed time in nano seconds.
+	 */
+	public long getNanos() {
+	    return nanos;
+	}
+
+	public double getFilesPerSecond() {
+	    return files * 1e9 / Math.max(nanos, 1);
+	}
+
+	public double getMegabytesPerSecond() {
+	    return bytes * 1e9 / (1 << 20) / Math.max(nanos, 1);
+	}
+
+	@Override
+	public String toString() {
+	    return String.format("%d files, %.1f MB in %.1f ms, %.1f files/s, %.1f MB/s", files,
+		    bytes / (double) (1 << 20), nanos / 1e6, getFilesPerSecond(), getMegabytesPerSecond());
+	}
+    }
+
+    /**
+     * one pass to break a input into a counter.
+     */
+    private interface Pass {
+	void run(SpanCounter counter) throws IOException;
+    }
+
+    private String[] countTwoPass(Pass pass, int n, long memory) throws IOException {
+	if (n <= 0) {
+	    throw new IllegalArgumentException("n must be greater than 0");
+	}
+	CountMinSketch sketch = new CountMinSketch(memory / 2);
+	SpaceSaving heavy = new SpaceSaving(SpaceSaving.capacityOf(memory / 4));
+	pass.run(new SpanCounter(new SketchTable(sketch, heavy)));
+	if (heavy.size() == 0) {
+	    return new String[] {};
+	}
+	long threshold = threshold(heavy, n);
+	CountTable counts = new CountTable();
+	pass.run(new SpanCounter(new CandidateTable(sketch, threshold, counts, CountTable.capacityOf(memory / 4))));
+	return count(counts, n);
+    }
+
+    /**
+     * the n-th highest lower bound of counters, 1 if there are less than n
+     * counters.
+     */
+    private long threshold(SpaceSaving heavy, int n) {
+	if (heavy.size() < n) {
+	    return 1;
+	}
+	long[] bounds = new long[heavy.size()];
+	for (int id = 0; id < bounds.length; id++) {
+	    bounds[id] = heavy.getCount(id) - heavy.getError(id);
+	}
+	Arrays.sort(bounds);
+	return bounds[bounds.length - n];
+    }
+
+    /**
+     * first pass table adds words to both sketch and counters.
+     */
+    private static class SketchTable implements SpanTable {
+
+	private CountMinSketch sketch;
+	private SpaceSaving heavy;
+
+	SketchTable(CountMinSketch sketch, SpaceSaving heavy) {
+	    this.sketch = sketch;
+	    this.heavy = heavy;
+	}
+
+	@Override
+	public int add(CharSequence text, int start, int end) {
+	    sketch.add(text, start, end);
+	    return heavy.add(text, start, end);
+	}
+
+	@Override
+	public int add(char[] chars, int start, int end) {
+	    sketch.add(chars, start, end);
+	    return heavy.add(chars, start, end);
+	}
+    }
+
+    /**
+     * second pass table only counts words estimated over the threshold, at
+     * most a fixed number of them.
+     */
+    private static class CandidateTable implements SpanTable {
+
+	private CountMinSketch sketch;
+	private long threshold;
+	private CountTable counts;
+	private int capacity;
+
+	CandidateTable(CountMinSketch sketch, long threshold, CountTable counts, int capacity) {
+	    this.sketch = sketch;
+	    this.threshold = threshold;
+	    this.counts = counts;
+	    this.capacity = capacity;
+	}
+
+	@Override
+	public int add(CharSequence text, int start, int end) {
+	    return sketch.estimate(text, start, end) >= threshold ? check(counts.add(text, start, end)) : -1;
+	}
+
+	@Override
+	public int add(char[] chars, int start, int end) {
+	    return sketch.estimate(chars, start, end) >= threshold ? check(counts.add(chars, start, end)) : -1;
+	}
+
+	private int check(int id) {
+	    if (id >= capacity) {
+		throw new IllegalStateException("memory is too small, more than " + capacity
+			+ " candidates over threshold " + threshold);
+	    }
+	    return id;
+	}
+    }
+
+    /**
+     * a word with estimated occurrences.
+     */
+    public static class Estimate {
+
+	private final String word;
+	private final long count;
+	private final long error;
+	private final boolean guaranteed;
+
+	Estimate(String word, long count, long error, boolean guaranteed) {
 	    this.word = word;
-	    this.count = 0;
+	    this.count = count;
+	    this.error = error;
+	    this.guaranteed = guaranteed;
+	}
+
+	public String getWord() {
+	    return word;
+	}
+
+	/**
+	 * upper bound of occurrences.
+	 * 
+	 * @return estimated count.
+	 */
+	public long getCount() {
+	    return count;
+	}
+
+	/**
+	 * maximum over estimation of the count.
+	 * 
+	 * @return error of count.
+	 */
+	public long getError() {
+	    return error;
+	}
+
+	/**
+	 * lower bound of occurrences.
+	 * 
+	 * @return count - error.
+	 */
+	public long getMinCount() {
+	    return count - error;
+	}
+
+	/**
+	 * test if the word is surely one of the highest n words, its lower
+	 * bound is not less than the upper bound of any word after n.
+	 * 
+	 * @return true if the word is in top n.
+	 */
+	public boolean isGuaranteed() {
+	    return guaranteed;
 	}
+
+	@Override
+	public String toString() {
+	    return word + ":" + count + "(+-" + error + ")";
+	}
+    }
+
+    /**
+     * a consumer to count word spans of chars or UTF-8 bytes.
+     * 
+     * The words are added to count table as spans, a string is never created
+     * unless the normalizer changes the word.
+     */
+    private class SpanCounter implements SpanConsumer, ByteSpanConsumer {
+
+	private SpanTable counts;
+	private CharSpan span = new CharSpan();
+	/**
+	 * decoded UTF-8 word, it only grows for long words.
+	 */
+	char[] chars = new char[64];
+	CharBuffer charView = CharBuffer.wrap(chars);
+
+	SpanCounter(SpanTable counts) {
+	    this.counts = counts;
+	}
+
+	@Override
+	public void accept(CharSequence text, int start, int end, Type kind) {
+	    add(text, start, end, normalize(text, start, end));
+	}
+
+	@Override
+	public void accept(ByteBuffer bytes, int start, int end, Type kind) {
+	    int length = decode(bytes, start, end);
+	    add(chars, length, normalize(charView, 0, length));
+	}
+
+	/**
+	 * add a normalized word of text.
+	 */
+	void add(CharSequence text, int start, int end, CharSequence w) {
+	    if (w == span) {
+		counts.add(text, start, end);
+	    } else if (w != null) {
+		counts.add(w, 0, w.length());
+	    }
+	}
+
+	/**
+	 * add a normalized word of decoded chars.
+	 */
+	void add(char[] chars, int length, CharSequence w) {
+	    if (w == span) {
+		counts.add(chars, 0, length);
+	    } else if (w != null) {
+		counts.add(w, 0, w.length());
+	    }
+	}
+
+	/**
+	 * decode a UTF-8 word into chars.
+	 */
+	int decode(ByteBuffer bytes, int start, int end) {
+	    if (end - start > chars.length) {
+		chars = new char[Math.max(end - start, chars.length * 2)];
+		charView = CharBuffer.wrap(chars);
+	    }
+	    return Utf8.decode(bytes, start, end, chars, 0);
+	}
+
+	CharSequence normalize(CharSequence text, int start, int end) {
+	    span.set(text, start, end);
+	    return wn == null ? span : wn.normalize(span);
+	}
+    }
+
+    /**
+     * create a consumer counts words of each text into a table, the texts are
+     * broken and normalized same as this counter.
+     */
+    Consumer<CharSequence> counter(SpanTable table) {
+	SpanCounter counter = new SpanCounter(table);
+	return text -> wb.forEachSpan(text, counter);
+    }
+
+    /**
+     * a span counter times one word in <code>StageProfile.SAMPLE_RATE</code>.
+     */
+    private class ProfiledCounter extends SpanCounter {
+
+	private StageProfile profile;
+
+	ProfiledCounter(SpanTable counts, StageProfile profile) {
+	    super(counts);
+	    this.profile = profile;
+	}
+
+	@Override
+	public void accept(CharSequence text, int start, int end, Type kind) {
+	    if (!profile.sample()) {
+		super.accept(text, start, end, kind);
+		return;
+	    }
+	    long begin = System.nanoTime();
+	    CharSequence w = normalize(text, start, end);
+	    long normalized = System.nanoTime();
+	    add(text, start, end, w);
+	    profile.addSample(0, normalized - begin, System.nanoTime() - normalized);
+	}
+
+	@Override
+	public void accept(ByteBuffer bytes, int start, int end, Type kind) {
+	    if (!profile.sample()) {
+		super.accept(bytes, start, end, kind);
+		return;
+	    }
+	    long begin = System.nanoTime();
+	    int length = decode(bytes, start, end);
+	    long decoded = System.nanoTime();
+	    CharSequence w = normalize(charView, 0, length);
+	    long normalized = System.nanoTime();
+	    add(chars, length, w);
+	    profile.addSample(decoded - begin, normalized - decoded, System.nanoTime() - normalized);
+	}
+    }
+
+    /**
+     * return highest N words, words with same count are ordered by first
+     * occurrence.
+     * 
+     * @param counts
+     *            word count table
+     * @param n
+     *            number of entries to return
+     * @return words with highest occurrences.
+     */
+    private String[] count(CountTable counts, int n) {
+	int[] ids = counts.top(n);
+	String[] words = new String[ids.length];
+	for (int i = 0; i < words.length; i++) {
+	    words[i] = counts.getWord(ids[i]);
+	}
+	return words;
     }
 
     /**
-     * use heap to return highest N words
+     * return highest N words and commit the events of the document.
      * 
      * @param counts
-     *            word count entries
+     *            word count table
      * @param n
      *            number of entries to return
+     * @param profile
+     *            profile of the document
      * @return words with highest occurrences.
      */
-    private String[] count(Collection<WordCount> counts, int n) {
-	Heap<WordCount> heap = new Heap<>(n, (c1, c2) -> c1.count - c2.count);
-	counts.forEach(c -> heap.offer(c));
-	ArrayList<String> words = new ArrayList<>();
-	WordCount wc = null;
-	while ((wc = heap.poll()) != null) {
-	    words.add(wc.word);
+    private String[] count(CountTable counts, int n, StageProfile profile) {
+	profile.endPass(counts.size());
+	String[] words = count(counts, n);
+	profile.endSelect();
+	return words;
+    }
+
+    /**
+     * return highest N estimates of counters.
+     * 
+     * @param counts
+     *            counters of words
+     * @param n
+     *            number of entries to return
+     * @return estimated words with highest occurrences.
+     */
+    private Estimate[] estimate(SpaceSaving counts, int n) {
+	int[] ids = counts.top(n + 1);
+	// highest count of words after n, monitored or not
+	long after = Math.max(counts.getMinCount(), ids.length > n ? counts.getCount(ids[n]) : 0);
+	Estimate[] words = new Estimate[Math.min(n, ids.length)];
+	for (int i = 0; i < words.length; i++) {
+	    int id = ids[i];
+	    long count = counts.getCount(id);
+	    long error = counts.getError(id);
+	    words[i] = new Estimate(counts.getWord(id), count, error, count - error >= after);
 	}
-	return words.toArray(new String[words.size()]);
+	return words;
     }
 
     /**
      * main application to read a input file and return top N words.
      * 
-     * It accepts two arguments [FILE NAME] [COUNT]
+     * It accepts two arguments [FILE NAME] [COUNT], and an optional
+     * [MEMORY MB]. If the memory is given, the input is read twice, a URL is
+     * downloaded once into a temporary file, and both passes use at most about
+     * the given memory.
+     * 
+     * In batch mode it accepts -batch [THREADS] [COUNT] [DIRECTORY|GLOB]...,
+     * all files found are counted together, the throughput is printed to
+     * standard error.
      * 
      * @param args
      *            arguments of the application
@@ -121,20 +994,51 @@ public class WordCounter {
      *             file can not be read
      */
     public static void main(String[] args) throws IOException {
-	if (args == null || args.length != 2) {
-	    System.out.println("WordCounter <file_name|URL> <word_count>");
+	if (args != null && args.length >= 4 && args[0].equals("-batch")) {
+	    List<Path> files = new ArrayList<>();
+	    for (int i = 3; i < args.length; i++) {
+		files.addAll(findFiles(args[i]));
+	    }
+	    BatchResult result = new WordCounter().countFiles(files, Integer.parseInt(args[2]),
+		    Integer.parseInt(args[1]));
+	    String[] words = result.getWords();
+	    for (int i = 0; i < words.length; i++) {
+		System.out.println(i + "\t:" + words[i]);
+	    }
+	    System.err.println(result);
+	    System.exit(0);
+	}
+	if (args == null || args.length < 2 || args.length > 3) {
+	    System.out.println("WordCounter <file_name|URL> <word_count> [memory_mb]");
+	    System.out.println("WordCounter -batch <threads> <word_count> <dir|glob>...");
 	    System.exit(-1);
 	}
 
-	String text = null;
+	InputStream in = null;
 	try {
-	    URL url = new URL(args[0]);
-	    text = readURL(url);
+	    in = new URL(args[0]).openStream();
 	} catch (IOException ex) {
-	    text = readFile(args[0]);
+	    in = null;
 	}
 	int count = Integer.parseInt(args[1]);
-	String[] words = new WordCounter().count(text, count);
+	String[] words;
+	if (args.length == 3) {
+	    long memory = Long.parseLong(args[2]) << 20;
+	    if (in == null) {
+		words = new WordCounter().countTwoPass(Paths.get(args[0]), count, memory);
+	    } else {
+		// both passes read one download
+		try (InputStream stream = in) {
+		    words = new WordCounter().countTwoPass(stream, count, memory);
+		}
+	    }
+	} else if (in == null) {
+	    words = new WordCounter().countFile(Paths.get(args[0]), count);
+	} else {
+	    try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+		words = new WordCounter().countStream(reader, count);
+	    }
+	}
 	for (int i = 0; i < words.length; i++) {
 	    String word = words[i];
 	    System.out.println(i + "\t:" + word);
@@ -142,44 +1046,4 @@ public class WordCounter {
 	System.exit(0);
     }
 
-    /**
-     * load UTF-8 encoded file into memory
-     * 
-     * @param fileName
-     *            file to be loaded
-     * @return text in the file name.
-     * @throws IOException
-     */
-    private static String readFile(String fileName) throws IOException {
-	RandomAccessFile rf = new RandomAccessFile(fileName, "r");
-	try {
-	    long length = rf.length();
-	    if (length > Integer.MAX_VALUE) {
-		throw new IOException(fileName + " is too huge to read into memory");
-	    }
-	    byte[] contents = new byte[(int) length];
-	    rf.readFully(contents);
-	    return new String(contents, "utf-8");
-	} finally {
-	    rf.close();
-	}
-    }
-
-    private static String readURL(URL url) throws IOException {
-
-	InputStream in = url.openStream();
-	try {
-	    ByteArrayOutputStream out = new ByteArrayOutputStream();
-	    byte[] buffer = new byte[4096];
-	    int size = in.read(buffer);
-	    while (size > 0) {
-		out.write(buffer, 0, size);
-		size = in.read(buffer);
-	    }
-	    return new String(out.toByteArray(), "utf-8");
-	} finally {
-	    in.close();
-	}
-    }
-
 }
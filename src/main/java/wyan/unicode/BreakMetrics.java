@@ -0,0 +1,229 @@
+package wyan.unicode;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import wyan.unicode.rule.ResolvedRule;
+
+/**
+ * counters of word breaking, for finding where the time is spent.
+ * 
+ * It counts how many times each rule decided a break, the characters read and
+ * the words generated. A <code>RuleMatcher</code> also counts the stage of
+ * the rule index resolved each character and the number of candidate rules
+ * tested.
+ * 
+ * The counters are only updated by a word breaker or matcher created with
+ * metrics, the others never touch them. A word breaker counts in its executor
+ * and adds the counts to the metrics at the end of each text, so the metrics
+ * can be shared by threads.
+ * 
+ * @author wyan
+ *
+ */
+public class BreakMetrics implements BreakMetricsMBean {
+
+    /**
+     * stages of the rule index searched by <code>RuleMatcher</code>.
+     */
+    private static final String[] STAGES = { "SOURCE_NEXT", "SOURCE_ANY", "ANY_NEXT", "ANY_ANY", "DEFAULT" };
+    /**
+     * name of the implicit rule breaks when no rule matches.
+     */
+    public static final String DEFAULT_RULE = "DEFAULT";
+
+    private final String[] names;
+    /**
+     * hits indexed by rule id, the last one is the default rule.
+     */
+    private final LongAdder[] rules;
+    private final LongAdder[] stages;
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+
+    /**
+     * create metrics of the rules.
+     * 
+     * @param unicode
+     *            word breaking rules.
+     */
+    public BreakMetrics(Unicode unicode) {
+	List<ResolvedRule> resolved = unicode.getResolvedRules();
+	names = new String[resolved.size() + 1];
+	for (ResolvedRule rule : resolved) {
+	    names[rule.getId()] = rule.getName();
+	}
+	names[resolved.size()] = DEFAULT_RULE;
+	rules = newAdders(names.length);
+	stages = newAdders(STAGES.length);
+    }
+
+    private static LongAdder[] newAdders(int count) {
+	LongAdder[] adders = new LongAdder[count];
+	for (int i = 0; i < count; i++) {
+	    adders[i] = new LongAdder();
+	}
+	return adders;
+    }
+
+    /**
+     * count a match of <code>RuleMatcher</code>.
+     * 
+     * @param result
+     *            packed result of the match
+     * @param hits
+     *            number of times the match is made
+     */
+    void addMatch(long result, long hits) {
+	int rule = RuleMatcher.getRule(result);
+	rules[rule < 0 ? rules.length - 1 : rule].add(hits);
+	stages[RuleMatcher.getStage(result)].add(hits);
+	candidates.add(hits * RuleMatcher.getCandidates(result));
+    }
+
+    /**
+     * count the transitions of a automaton compiled with traces.
+     * 
+     * @param automaton
+     *            automaton of the same rules
+     * @param hits
+     *            number of times each transition is taken, indexed as the
+     *            table of the automaton.
+     */
+    void addTransitions(RuleAutomaton automaton, long[] hits) {
+	int width = automaton.getWidth();
+	long read = 0;
+	for (int i = 0; i < hits.length; i++) {
+	    long h = hits[i];
+	    if (h == 0) {
+		continue;
+	    }
+	    int state = i - i % width;
+	    int type = i - state;
+	    if (type == TypeIndex.EOT_ORDINAL) {
+		for (int trace : automaton.getFlushTraces(state)) {
+		    addMatch((long) trace << 32, h);
+		}
+	    } else {
+		read += h;
+		int trace = automaton.getTrace(state, type);
+		if (trace != 0) {
+		    addMatch((long) trace << 32, h);
+		}
+	    }
+	}
+	chars.add(read);
+    }
+
+    void addChars(long count) {
+	chars.add(count);
+    }
+
+    void addTokens(long count) {
+	tokens.add(count);
+    }
+
+    /**
+     * hits of each rule by name, rules of same name are summed.
+     * 
+     * @return hits in order of rules, the default rule is the last.
+     */
+    @Override
+    public Map<String, Long> getRuleHits() {
+	Map<String, Long> hits = new LinkedHashMap<>();
+	for (int i = 0; i < names.length; i++) {
+	    hits.merge(names[i], rules[i].sum(), Long::sum);
+	}
+	return hits;
+    }
+
+    /**
+     * number of characters resolved by each stage of <code>RuleMatcher</code>.
+     * 
+     * @return hits of SOURCE_NEXT, SOURCE_ANY, ANY_NEXT, ANY_ANY and DEFAULT
+     *         in order.
+     */
+    @Override
+    public Map<String, Long> getStageHits() {
+	Map<String, Long> hits = new LinkedHashMap<>();
+	for (int i = 0; i < STAGES.length; i++) {
+	    hits.put(STAGES[i], stages[i].sum());
+	}
+	return hits;
+    }
+
+    /**
+     * number of candidate rules tested by <code>RuleMatcher</code>.
+     * 
+     * @return candidates tested.
+     */
+    @Override
+    public long getCandidates() {
+	return candidates.sum();
+    }
+
+    /**
+     * number of characters read, the end of text is not counted.
+     * 
+     * @return characters read.
+     */
+    @Override
+    public long getChars() {
+	return chars.sum();
+    }
+
+    /**
+     * number of words generated by word breakers.
+     * 
+     * @return words generated.
+     */
+    @Override
+    public long getTokens() {
+	return tokens.sum();
+    }
+
+    /**
+     * set all counters to 0.
+     */
+    @Override
+    public void reset() {
+	for (LongAdder adder : rules) {
+	    adder.reset();
+	}
+	for (LongAdder adder : stages) {
+	    adder.reset();
+	}
+	candidates.reset();
+	chars.reset();
+	tokens.reset();
+    }
+
+    /**
+     * register the metrics to the platform MBean server.
+     * 
+     * @param name
+     *            name of the metrics, such as the name of the rules.
+     * @return object name registered, as
+     *         <code>wyan.unicode:type=BreakMetrics,name=[name]</code>.
+     * @throws JMException
+     *             name is invalid or already registered.
+     */
+    public ObjectName register(String name) throws JMException {
+	ObjectName objectName = new ObjectName("wyan.unicode:type=BreakMetrics,name=" + ObjectName.quote(name));
+	ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+	return objectName;
+    }
+
+    @Override
+    public String toString() {
+	return "chars=" + getChars() + ", tokens=" + getTokens() + ", candidates=" + getCandidates() + ", rules="
+		+ getRuleHits() + ", stages=" + getStageHits();
+    }
+}
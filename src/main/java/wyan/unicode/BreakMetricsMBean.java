@@ -0,0 +1,24 @@
+package wyan.unicode;
+
+import java.util.Map;
+
+/**
+ * management interface of <code>BreakMetrics</code>.
+ * 
+ * @author wyan
+ *
+ */
+public interface BreakMetricsMBean {
+
+    public Map<String, Long> getRuleHits();
+
+    public Map<String, Long> getStageHits();
+
+    public long getCandidates();
+
+    public long getChars();
+
+    public long getTokens();
+
+    public void reset();
+}
@@ -0,0 +1,34 @@
+package wyan.unicode;
+
+import java.nio.ByteBuffer;
+
+import wyan.unicode.type.Type;
+
+/**
+ * a callback to receive word spans of UTF-8 text from
+ * <code>WordBreaker</code>.
+ * 
+ * A span is given as byte offsets in the buffer, the word is not decoded. The
+ * consumer can decode the bytes only if it wants to keep the word.
+ * 
+ * @see WordBreaker#forEachSpan(ByteBuffer, ByteSpanConsumer)
+ * @author wyan
+ *
+ */
+@FunctionalInterface
+public interface ByteSpanConsumer {
+
+    /**
+     * accept a word span.
+     * 
+     * @param bytes
+     *            UTF-8 text being broken, read it by absolute index.
+     * @param start
+     *            index of the first byte of the word.
+     * @param end
+     *            index after the last byte of the word.
+     * @param kind
+     *            type of the first character in the word.
+     */
+    public void accept(ByteBuffer bytes, int start, int end, Type kind);
+}
@@ -24,4 +24,20 @@ public interface IWordNormalizer {
      * @return a normalized word, null if the word should be ignore.
      */
     public String normalize(String text);
+
+    /**
+     * normalize a word given as a char sequence.
+     * 
+     * The word may be a view of the text being broken, it is only valid during
+     * the call. A normalizer keeps the word unchanged should return the word
+     * itself, so no string is created for it. The default implementation
+     * converts the word to string and calls <code>normalize(String)</code>.
+     * 
+     * @param text
+     *            word to be normalized
+     * @return a normalized word, null if the word should be ignore.
+     */
+    public default CharSequence normalize(CharSequence text) {
+	return text == null ? null : normalize(text.toString());
+    }
 }
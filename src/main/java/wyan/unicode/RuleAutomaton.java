@@ -0,0 +1,320 @@
+package wyan.unicode;
+
+/**
+ * a dense state transition table compiled from word breaking rules.
+ *
+ * The automaton reads the type ordinal of one character in each step, the
+ * transition is a single array load:
+ *
+ * <pre>
+ * entry = table[state + type]
+ * state = entry &gt;&gt;&gt; FLAG_BITS
+ * </pre>
+ *
+ * A state is the offset of its row in the table, so no multiplication is
+ * needed to find the next row. The low <code>FLAG_BITS</code> bits of an entry
+ * are break flags, bit i means there is a break before the character read i
+ * steps before the current one.
+ *
+ * Rules such as WB6 look ahead more than one character, so the decision of a
+ * break is delayed until enough characters are read. A normal transition can
+ * only set the bit <code>getDelay()</code>. The transition of EOT flushes all
+ * pending decisions and returns to the start state, the break at the end of
+ * text is implicit and never flagged.
+ *
+ * An automaton compiled with traces also keeps the match of
+ * <code>RuleMatcher</code> made by each transition, as the high 32 bits of the
+ * packed result, 0 if the transition makes no decision. The transition of EOT
+ * may make several decisions.
+ *
+ * @see RuleCompiler
+ * @author wyan
+ *
+ */
+public class RuleAutomaton {
+
+    /**
+     * number of bits used by break flags in a transition entry.
+     */
+    public static final int FLAG_BITS = 8;
+    /**
+     * mask of break flags in a transition entry.
+     */
+    public static final int FLAG_MASK = (1 << FLAG_BITS) - 1;
+
+    /**
+     * transitions, row by row.
+     */
+    private final int[] table;
+    /**
+     * number of type ordinals, it is the width of a row.
+     */
+    private final int width;
+    /**
+     * row of the start state.
+     */
+    private final int start;
+    /**
+     * number of characters a break decision is delayed.
+     */
+    private final int delay;
+    /**
+     * matches of transitions, indexed as the table, null if not traced.
+     */
+    private final int[] traces;
+    /**
+     * matches of EOT transition, indexed by row, null if not traced.
+     */
+    private final int[][] flushTraces;
+
+    /**
+     * create a automaton from a compiled table.
+     *
+     * @param table
+     *            transitions, row by row
+     * @param width
+     *            row width, number of type ordinals
+     * @param start
+     *            row offset of the start state
+     * @param delay
+     *            number of characters a break decision is delayed
+     * @param traces
+     *            matches of transitions, null if not traced
+     * @param flushTraces
+     *            matches of EOT transition of each row, null if not traced
+     */
+    RuleAutomaton(int[] table, int width, int start, int delay, int[] traces, int[][] flushTraces) {
+	assert delay < FLAG_BITS;
+	this.table = table;
+	this.width = width;
+	this.start = start;
+	this.delay = delay;
+	this.traces = traces;
+	this.flushTraces = flushTraces;
+    }
+
+    /**
+     * start state of the automaton.
+     *
+     * @return state before the first character.
+     */
+    public int start() {
+	return start;
+    }
+
+    /**
+     * transition from a state with input type.
+     *
+     * @param state
+     *            current state
+     * @param type
+     *            type ordinal of next character, or EOT at the end of text.
+     * @return transition entry contains next state and break flags.
+     */
+    public int next(int state, int type) {
+	return table[state + type];
+    }
+
+    /**
+     * next state of a transition entry.
+     *
+     * @param entry
+     *            transition entry
+     * @return next state.
+     */
+    public static int nextState(int entry) {
+	return entry >>> FLAG_BITS;
+    }
+
+    /**
+     * number of characters a break decision is delayed.
+     *
+     * @return delay, 0 if no rule looks ahead more than one character.
+     */
+    public int getDelay() {
+	return delay;
+    }
+
+    /**
+     * flag of a break decided by a normal transition.
+     *
+     * @return break flag.
+     */
+    public int getBreakFlag() {
+	return 1 << delay;
+    }
+
+    /**
+     * test if a text can be split after any character of the type.
+     *
+     * Breaking the two parts separately must generate the same breaks as
+     * breaking the whole text, so there must be a break after the character,
+     * the decisions before it must not depend on the characters after it, and
+     * the characters after it must be broken as the start of a text. It is
+     * checked by running each state with every input of up to
+     * <code>delay + 1</code> characters after the split, after that the state
+     * must be the same as starting a new text.
+     *
+     * @param type
+     *            type ordinal of the character
+     * @return true if the text can be split after the type.
+     */
+    public boolean isSafeSplit(int type) {
+	int inputs = width - TypeIndex.OTHER_ORDINAL;
+	if (Math.pow(inputs, delay + 1) * getStateCount() > 1 << 24) {
+	    // too many inputs to check
+	    return false;
+	}
+	int[] after = new int[delay + 1];
+	for (int s = 0; s < table.length; s += width) {
+	    if (!isSafeSplit(s, type, after, 0)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    private boolean isSafeSplit(int state, int type, int[] after, int length) {
+	if (length > 0 && !isSameBreaks(state, type, after, length)) {
+	    return false;
+	}
+	if (length == after.length) {
+	    return true;
+	}
+	for (int t = TypeIndex.OTHER_ORDINAL; t < width; t++) {
+	    after[length] = t;
+	    if (!isSafeSplit(state, type, after, length + 1)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * compare breaks of the whole text with the split text.
+     *
+     * @param state
+     *            state before the split character
+     * @param type
+     *            type of the split character, at position 0
+     * @param after
+     *            types after the split character
+     * @param length
+     *            number of types after the split character
+     * @return true if the breaks are same.
+     */
+    private boolean isSameBreaks(int state, int type, int[] after, int length) {
+	boolean end = length < after.length;
+	int[] whole = new int[length + 1];
+	whole[0] = type;
+	System.arraycopy(after, 0, whole, 1, length);
+	long[] result = new long[2];
+	run(state, whole, whole.length, 0, end, result);
+	long wholeBreaks = result[0];
+	long wholeState = result[1];
+	run(state, new int[] { type }, 1, 0, true, result);
+	long split = result[0] | 1L << 1;
+	run(start, after, length, 1, end, result);
+	// breaks at start of second part are ignored
+	split |= result[0] & ~3L;
+	if (end) {
+	    return wholeBreaks == split;
+	}
+	// breaks after position 1 are not decided yet
+	return (wholeBreaks & 3L) == (split & 3L) && wholeState == result[1];
+    }
+
+    /**
+     * run the automaton and collect the breaks.
+     *
+     * @param state
+     *            start state
+     * @param types
+     *            types to be read
+     * @param length
+     *            number of types to be read
+     * @param offset
+     *            position of the first type
+     * @param end
+     *            true to read EOT at last
+     * @param result
+     *            breaks at positions not less than 0, bit p is the break
+     *            before position p, and the last state.
+     */
+    private void run(int state, int[] types, int length, int offset, boolean end, long[] result) {
+	long breaks = 0;
+	for (int i = 0; i < length; i++) {
+	    int entry = table[state + types[i]];
+	    state = nextState(entry);
+	    int position = offset + i - delay;
+	    if ((entry & getBreakFlag()) != 0 && position >= 0) {
+		breaks |= 1L << position;
+	    }
+	}
+	if (end) {
+	    int entry = table[state + TypeIndex.EOT_ORDINAL];
+	    state = nextState(entry);
+	    for (int back = 0; back < FLAG_BITS; back++) {
+		int position = offset + length - 1 - back;
+		if ((entry & 1 << back) != 0 && position >= 0) {
+		    breaks |= 1L << position;
+		}
+	    }
+	}
+	result[0] = breaks;
+	result[1] = state;
+    }
+
+    /**
+     * test if the automaton keeps the matches of transitions.
+     *
+     * @return true if compiled with traces.
+     */
+    public boolean isTraced() {
+	return traces != null;
+    }
+
+    /**
+     * match made by a transition.
+     *
+     * @param state
+     *            current state
+     * @param type
+     *            type ordinal of next character, not EOT.
+     * @return high 32 bits of the packed match result, 0 if the transition
+     *         makes no decision.
+     */
+    public int getTrace(int state, int type) {
+	return traces[state + type];
+    }
+
+    /**
+     * matches made by the EOT transition.
+     *
+     * @param state
+     *            current state
+     * @return high 32 bits of the packed match results, oldest first.
+     */
+    public int[] getFlushTraces(int state) {
+	return flushTraces[state / width];
+    }
+
+    /**
+     * width of a row, transitions of a state are
+     * <code>[state, state + width)</code>.
+     *
+     * @return number of type ordinals.
+     */
+    public int getWidth() {
+	return width;
+    }
+
+    /**
+     * number of states after minimization.
+     *
+     * @return state count.
+     */
+    public int getStateCount() {
+	return table.length / width;
+    }
+}
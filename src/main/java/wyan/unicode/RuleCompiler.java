@@ -0,0 +1,451 @@
+package wyan.unicode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import wyan.unicode.rule.ResolvedRule;
+import wyan.unicode.rule.Rule.Event;
+
+/**
+ * compile word breaking rules into a <code>RuleAutomaton</code>.
+ *
+ * The compiler explores all configurations the rule executor can reach. A
+ * configuration contains:
+ * <ol>
+ * <li>the source state of the next break decision.</li>
+ * <li>types of the characters before the decision, as many as the longest
+ * rule source.</li>
+ * <li>types of characters read but not decided yet, less than the longest
+ * rule next.</li>
+ * </ol>
+ *
+ * Once enough characters are read, the decision is made by
+ * <code>RuleMatcher</code> on a sample text built from one code point of each
+ * type, so the automaton has exactly the same behavior as the matcher. At last
+ * the equivalent configurations are merged into one state.
+ *
+ * The automaton can be compiled with traces, it keeps the match of
+ * <code>RuleMatcher</code> made by each transition, so the rules used by a
+ * text can be counted from the transitions. Only the configurations made same
+ * matches are merged, so it may have more states.
+ *
+ * @author wyan
+ *
+ */
+public class RuleCompiler {
+
+    /**
+     * history or input not exist, before start of text.
+     */
+    private static final int NONE = -1;
+
+    private List<ResolvedRule> rules;
+    private TypeIndex index;
+    private RuleMatcher matcher;
+    /**
+     * sample code point of each type ordinal, -1 if the type has no code
+     * point.
+     */
+    private int[] samples;
+    /**
+     * type ordinals may appear in text.
+     */
+    private int[] inputs;
+    /**
+     * number of characters before a decision used by rules.
+     */
+    private int history;
+    /**
+     * number of characters after a decision used by rules.
+     */
+    private int lookahead;
+
+    /**
+     * create a compiler for the rules.
+     *
+     * @param unicode
+     *            word breaking rules and character types.
+     */
+    public RuleCompiler(Unicode unicode) {
+	this.rules = unicode.getResolvedRules();
+	this.index = unicode.getTypeIndex();
+	this.matcher = new RuleMatcher(unicode);
+	this.history = 1;
+	this.lookahead = 1;
+	for (ResolvedRule rule : rules) {
+	    history = Math.max(history, rule.getSources().length);
+	    lookahead = Math.max(lookahead, rule.getNexts().length);
+	}
+	if (lookahead > RuleAutomaton.FLAG_BITS) {
+	    throw new IllegalArgumentException("rules look ahead too many characters:" + lookahead);
+	}
+	buildSamples();
+    }
+
+    /**
+     * find a code point for each type.
+     */
+    private void buildSamples() {
+	samples = new int[index.getTypeCount()];
+	Arrays.fill(samples, -1);
+	for (int t = TypeIndex.OTHER_ORDINAL + 1; t < samples.length; t++) {
+	    for (int[] range : index.getTypeByOrdinal(t).getCodePoints()) {
+		for (int cp = range[0]; cp <= range[1] && samples[t] == -1; cp++) {
+		    if (index.getTypeOrdinal(cp) == t) {
+			samples[t] = cp;
+		    }
+		}
+	    }
+	}
+	for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+	    if (index.getTypeOrdinal(cp) == TypeIndex.OTHER_ORDINAL
+		    && (cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE)) {
+		samples[TypeIndex.OTHER_ORDINAL] = cp;
+		break;
+	    }
+	}
+	inputs = IntStream.range(0, samples.length).filter(t -> samples[t] != -1).toArray();
+    }
+
+    /**
+     * a configuration of the rule executor.
+     */
+    private static class Config {
+	/** source state ordinal */
+	final int from;
+	/** types before the decision, oldest first */
+	final int[] history;
+	/** types read but not decided */
+	final int[] pending;
+
+	Config(int from, int[] history, int[] pending) {
+	    this.from = from;
+	    this.history = history;
+	    this.pending = pending;
+	}
+
+	@Override
+	public int hashCode() {
+	    return (from * 31 + Arrays.hashCode(history)) * 31 + Arrays.hashCode(pending);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+	    if (!(obj instanceof Config)) {
+		return false;
+	    }
+	    Config c = (Config) obj;
+	    return from == c.from && Arrays.equals(history, c.history) && Arrays.equals(pending, c.pending);
+	}
+    }
+
+    /**
+     * a break decision.
+     */
+    private static class Decision {
+	/** true if break before the decided character */
+	boolean isBreak;
+	/** number of characters consumed */
+	int size;
+	/** next source state ordinal */
+	int from;
+	/** high 32 bits of the match result */
+	int trace;
+    }
+
+    /**
+     * compile the rules into a minimized automaton.
+     *
+     * @return automaton has same behavior as rule matcher.
+     */
+    public RuleAutomaton compile() {
+	return compile(false);
+    }
+
+    /**
+     * compile the rules into a minimized automaton.
+     *
+     * @param traced
+     *            true to keep the matches of transitions.
+     * @return automaton has same behavior as rule matcher.
+     */
+    public RuleAutomaton compile(boolean traced) {
+	// 1. explore all reachable configurations, new configurations are
+	// appended to the list and explored in order.
+	List<Config> configs = new ArrayList<>();
+	Map<Config, Integer> ids = new HashMap<>();
+	List<int[]> nexts = new ArrayList<>();
+	List<int[]> flags = new ArrayList<>();
+	List<Integer> masks = new ArrayList<>();
+	List<int[]> traces = new ArrayList<>();
+	List<int[]> flushTraces = new ArrayList<>();
+	Config init = new Config(TypeIndex.SOT_ORDINAL, newHistory(), new int[0]);
+	ids.put(init, 0);
+	configs.add(init);
+	for (int id = 0; id < configs.size(); id++) {
+	    Config c = configs.get(id);
+	    int[] next = new int[samples.length];
+	    int[] flag = new int[samples.length];
+	    int[] trace = new int[samples.length];
+	    for (int t : inputs) {
+		Config n = step(c, t, flag, trace);
+		Integer nid = ids.get(n);
+		if (nid == null) {
+		    nid = configs.size();
+		    ids.put(n, nid);
+		    configs.add(n);
+		}
+		next[t] = nid;
+	    }
+	    nexts.add(next);
+	    flags.add(flag);
+	    List<Integer> flushTrace = new ArrayList<>();
+	    masks.add(flush(c, flushTrace));
+	    traces.add(trace);
+	    flushTraces.add(flushTrace.stream().mapToInt(Integer::intValue).toArray());
+	}
+	// 2. merge equivalent configurations
+	int[] states = minimize(configs.size(), nexts, flags, masks, traced ? traces : null, flushTraces);
+	int count = Arrays.stream(states).max().getAsInt() + 1;
+	// 3. build transition table
+	int width = samples.length;
+	int[] table = new int[count * width];
+	int[] tableTraces = traced ? new int[table.length] : null;
+	int[][] rowTraces = traced ? new int[count][] : null;
+	for (int id = 0; id < configs.size(); id++) {
+	    int row = states[id] * width;
+	    int[] next = nexts.get(id);
+	    int[] flag = flags.get(id);
+	    for (int t = 0; t < width; t++) {
+		// types never in text act as OTHER
+		int input = samples[t] == -1 ? TypeIndex.OTHER_ORDINAL : t;
+		table[row + t] = ((states[next[input]] * width) << RuleAutomaton.FLAG_BITS) | flag[input];
+		if (traced && t != TypeIndex.EOT_ORDINAL) {
+		    tableTraces[row + t] = traces.get(id)[input];
+		}
+	    }
+	    table[row + TypeIndex.EOT_ORDINAL] = ((states[0] * width) << RuleAutomaton.FLAG_BITS) | masks.get(id);
+	    if (traced) {
+		rowTraces[states[id]] = flushTraces.get(id);
+	    }
+	}
+	return new RuleAutomaton(table, width, states[0] * width, lookahead - 1, tableTraces, rowTraces);
+    }
+
+    /**
+     * history before start of text.
+     *
+     * @return history without any character.
+     */
+    private int[] newHistory() {
+	int[] h = new int[history];
+	Arrays.fill(h, NONE);
+	return h;
+    }
+
+    /**
+     * read a character in a configuration.
+     *
+     * @param c
+     *            configuration
+     * @param type
+     *            type of the character
+     * @param flag
+     *            break flags of the transition, indexed by type.
+     * @param trace
+     *            match of the transition, indexed by type, 0 if no decision.
+     * @return next configuration
+     */
+    private Config step(Config c, int type, int[] flag, int[] trace) {
+	int[] pending = Arrays.copyOf(c.pending, c.pending.length + 1);
+	pending[c.pending.length] = type;
+	if (pending.length < lookahead) {
+	    return new Config(c.from, c.history, pending);
+	}
+	Decision d = decide(c.from, c.history, pending);
+	if (d.isBreak) {
+	    flag[type] = 1 << (lookahead - 1);
+	}
+	trace[type] = d.trace;
+	return consume(d, c.history, pending);
+    }
+
+    /**
+     * decide all pending characters at end of text.
+     *
+     * @param c
+     *            configuration
+     * @param traces
+     *            matches of the decisions, in order
+     * @return break flags of pending characters
+     */
+    private int flush(Config c, List<Integer> traces) {
+	int mask = 0;
+	while (c.pending.length > 0) {
+	    Decision d = decide(c.from, c.history, c.pending);
+	    traces.add(d.trace);
+	    if (d.isBreak) {
+		// the oldest pending character is read length - 1 steps ago
+		mask |= 1 << (c.pending.length - 1);
+	    }
+	    c = consume(d, c.history, c.pending);
+	}
+	return mask;
+    }
+
+    /**
+     * move decided characters from pending to history.
+     *
+     * @param d
+     *            decision
+     * @param history
+     *            current history
+     * @param pending
+     *            pending characters
+     * @return next configuration
+     */
+    private Config consume(Decision d, int[] history, int[] pending) {
+	int[] all = new int[history.length + d.size];
+	System.arraycopy(history, 0, all, 0, history.length);
+	System.arraycopy(pending, 0, all, history.length, d.size);
+	return new Config(d.from, Arrays.copyOfRange(all, d.size, all.length),
+		Arrays.copyOfRange(pending, d.size, pending.length));
+    }
+
+    /**
+     * decide the break before the first pending character with rule matcher.
+     *
+     * @param from
+     *            source state
+     * @param history
+     *            types before the decision
+     * @param next
+     *            types after the decision
+     * @return the decision.
+     */
+    private Decision decide(int from, int[] history, int[] next) {
+	StringBuilder sb = new StringBuilder();
+	for (int t : history) {
+	    if (t != NONE) {
+		sb.appendCodePoint(samples[t]);
+	    }
+	}
+	int start = sb.length();
+	for (int t : next) {
+	    sb.appendCodePoint(samples[t]);
+	}
+	String text = sb.toString();
+	long r = matcher.matchPacked(text, start, from);
+	int rule = RuleMatcher.getRule(r);
+	int type = RuleMatcher.getType(r);
+	Decision d = new Decision();
+	d.trace = (int) (r >>> 32);
+	d.size = text.codePointCount(start, start + RuleMatcher.getSize(r));
+	assert d.size > 0;
+	Event event = rule == -1 ? Event.BREAK : rules.get(rule).getEvent();
+	switch (event) {
+	case BREAK:
+	    d.isBreak = true;
+	    d.from = type;
+	    break;
+	case NOBREAK:
+	    d.from = type == TypeIndex.ANY_ORDINAL ? from : type;
+	    break;
+	case TRANS:
+	    int target = rules.get(rule).getTarget();
+	    d.from = target == TypeIndex.ANY_ORDINAL ? from : target;
+	    break;
+	default:
+	    throw new IllegalStateException("unknow event:" + event);
+	}
+	return d;
+    }
+
+    /**
+     * merge equivalent states by partition refinement.
+     *
+     * @param size
+     *            number of states
+     * @param nexts
+     *            next states indexed by type
+     * @param flags
+     *            break flags indexed by type
+     * @param masks
+     *            break flags at end of text
+     * @param traces
+     *            matches indexed by type, null if states with different
+     *            matches can be merged
+     * @param flushTraces
+     *            matches at end of text
+     * @return merged state of each state, the state 0 is always merged to 0.
+     */
+    private int[] minimize(int size, List<int[]> nexts, List<int[]> flags, List<Integer> masks, List<int[]> traces,
+	    List<int[]> flushTraces) {
+	// start from states have same outputs
+	int[] classes = new int[size];
+	int count = partition(size, s -> {
+	    List<Integer> key = new ArrayList<>();
+	    key.add(masks.get(s));
+	    for (int t : inputs) {
+		key.add(flags.get(s)[t]);
+	    }
+	    if (traces != null) {
+		for (int t : inputs) {
+		    key.add(traces.get(s)[t]);
+		}
+		key.add(-1);
+		for (int trace : flushTraces.get(s)) {
+		    key.add(trace);
+		}
+	    }
+	    return key;
+	}, classes);
+	while (true) {
+	    int[] current = classes.clone();
+	    int[] refined = new int[size];
+	    int refinedCount = partition(size, s -> {
+		List<Integer> key = new ArrayList<>();
+		key.add(current[s]);
+		for (int t : inputs) {
+		    key.add(current[nexts.get(s)[t]]);
+		}
+		return key;
+	    }, refined);
+	    classes = refined;
+	    if (refinedCount == count) {
+		return classes;
+	    }
+	    count = refinedCount;
+	}
+    }
+
+    /**
+     * group states by key, group is numbered by the first state in it.
+     *
+     * @param size
+     *            number of states
+     * @param key
+     *            key of each state
+     * @param classes
+     *            group of each state
+     * @return number of groups
+     */
+    private int partition(int size, IntFunction<List<Integer>> key, int[] classes) {
+	Map<List<Integer>, Integer> groups = new HashMap<>();
+	for (int s = 0; s < size; s++) {
+	    List<Integer> k = key.apply(s);
+	    Integer g = groups.get(k);
+	    if (g == null) {
+		g = groups.size();
+		groups.put(k, g);
+	    }
+	    classes[s] = g;
+	}
+	return groups.size();
+    }
+}
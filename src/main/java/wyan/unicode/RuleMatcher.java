@@ -2,11 +2,11 @@ package wyan.unicode;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+import wyan.unicode.rule.ResolvedRule;
 import wyan.unicode.rule.Rule;
+import wyan.unicode.rule.Rule.Event;
 import wyan.unicode.type.Type;
 
 /**
@@ -21,6 +21,19 @@ import wyan.unicode.type.Type;
  * <li>ALWYAS BREAK</li>
  * </ol>
  * 
+ * The rules are indexed by the ordinals of source and next types, a step is a
+ * array lookup.
+ * 
+ * Most pairs of source and next types are decided without context: the first
+ * stage has a single rule, or no stage has any rule. The decision of those
+ * pairs is precomputed into a matrix, only the pairs need context search the
+ * rules, such as WB6 and WB11 look at the character after next.
+ * 
+ * The matcher only runs while <code>RuleCompiler</code> builds the automaton,
+ * word breaking runs the automaton and never calls the matcher. So the matrix
+ * only makes compiling the rules faster, it does not change the speed of
+ * breaking words.
+ * 
  * If one step return multiple rules, it select the rules as:
  * <ol>
  * <li>rules with longest match length.</li>
@@ -28,7 +41,8 @@ import wyan.unicode.type.Type;
  * <li>rules with ANY</li>
  * </ol>
  * 
- * TODO: optimize the rule match algorithm
+ * A matcher with <code>BreakMetrics</code> counts the stage and the rule of
+ * each match, and the number of candidate rules tested.
  * 
  * @author wyan
  *
@@ -36,13 +50,49 @@ import wyan.unicode.type.Type;
 public class RuleMatcher {
 
     /**
-     * type to rules map. source -> target -> rule list
+     * type to rules index. source ordinal -&gt; target ordinal -&gt; rules
+     * sorted by priority, null if there is no rule.
      */
-    private Map<Type, Map<Type, List<Rule>>> ruleIndex;
+    private ResolvedRule[][][] ruleIndex;
     /**
      * unicode setting of this matcher.
      */
     private Unicode unicode;
+    /**
+     * character types of the unicode setting.
+     */
+    private TypeIndex types;
+    /**
+     * counters of matches, null if not counted.
+     */
+    private BreakMetrics metrics;
+
+    /**
+     * decision of a type pair: break without context.
+     */
+    public static final int BREAK = 0;
+    /**
+     * decision of a type pair: no break without context.
+     */
+    public static final int NOBREAK = 1;
+    /**
+     * decision of a type pair: transfer to the rule target without context.
+     */
+    public static final int TRANS = 2;
+    /**
+     * decision of a type pair: the rules must be tested on the text.
+     */
+    public static final int NEEDS_CONTEXT = 3;
+
+    /**
+     * source ordinal -&gt; next ordinal -&gt; decision.
+     */
+    private byte[][] decisions;
+    /**
+     * source ordinal -&gt; next ordinal -&gt; high 32 bits of the packed
+     * result, 0 if the pair needs context.
+     */
+    private int[][] resolved;
 
     /**
      * create a rule matcher based on the unicode setting.
@@ -52,34 +102,95 @@ public class RuleMatcher {
      */
     public RuleMatcher(Unicode unicode) {
 	this.unicode = unicode;
+	this.types = unicode.getTypeIndex();
 	buildRuleIndex();
     }
 
+    /**
+     * count the matches into metrics.
+     * 
+     * @param metrics
+     *            metrics of the same rules, null to stop counting.
+     */
+    public void setMetrics(BreakMetrics metrics) {
+	this.metrics = metrics;
+    }
+
     /**
      * build rule index to optimize search algorithm.
      */
     private void buildRuleIndex() {
-	ruleIndex = new HashMap<>();
-	for (Rule rule : unicode.getRules()) {
-	    Type fromType = unicode.getType(rule.getLastSource());
-	    Type toType = unicode.getType(rule.getFirstNext());
-	    assert fromType != null;
-	    assert toType != null;
-	    Map<Type, List<Rule>> toIndex = ruleIndex.get(fromType);
-	    if (toIndex == null) {
-		toIndex = new HashMap<>();
-		ruleIndex.put(fromType, toIndex);
+	int count = types.getTypeCount();
+	List<List<List<ResolvedRule>>> index = new ArrayList<>();
+	for (int i = 0; i < count; i++) {
+	    List<List<ResolvedRule>> toIndex = new ArrayList<>();
+	    for (int j = 0; j < count; j++) {
+		toIndex.add(new ArrayList<>());
 	    }
-	    List<Rule> toRules = toIndex.get(toType);
-	    if (toRules == null) {
-		toRules = new ArrayList<>();
-		toIndex.put(toType, toRules);
-	    }
-	    toRules.add(rule);
+	    index.add(toIndex);
+	}
+	for (ResolvedRule rule : unicode.getResolvedRules()) {
+	    index.get(rule.getLastSource()).get(rule.getFirstNext()).add(rule);
 	}
 	// sort all lists according the rule match depth
-	ruleIndex.values()
-		.forEach(t -> t.values().forEach(rules -> Collections.sort(rules, this::compareRulePriority)));
+	ruleIndex = new ResolvedRule[count][count][];
+	for (int i = 0; i < count; i++) {
+	    for (int j = 0; j < count; j++) {
+		List<ResolvedRule> rules = index.get(i).get(j);
+		if (!rules.isEmpty()) {
+		    Collections.sort(rules, this::compareRulePriority);
+		    ruleIndex[i][j] = rules.toArray(new ResolvedRule[rules.size()]);
+		}
+	    }
+	}
+	buildDecisions(count);
+    }
+
+    /**
+     * precompute the decision of each type pair.
+     * 
+     * The stages are searched in order, a stage without rule is skipped. A
+     * single rule in the first stage with rules is used without test, so the
+     * pair is decided by the rule. If no stage has rules, it always breaks.
+     * Otherwise the rules must be tested with the characters around.
+     * 
+     * @param count
+     *            number of type ordinals
+     */
+    private void buildDecisions(int count) {
+	decisions = new byte[count][count];
+	resolved = new int[count][count];
+	for (int from = 0; from < count; from++) {
+	    for (int next = 0; next < count; next++) {
+		int stage = 0;
+		while (stage < DEFAULT_STAGE && stageRules(stage, from, next) == null) {
+		    stage++;
+		}
+		ResolvedRule[] rules = stage < DEFAULT_STAGE ? stageRules(stage, from, next) : null;
+		if (rules != null && rules.length > 1) {
+		    decisions[from][next] = NEEDS_CONTEXT;
+		    continue;
+		}
+		long result = rules == null ? pack(-1, 0, 0, 0) : pack(rules[0].getId(), 0, 0, 1);
+		resolved[from][next] = (int) (withStage(result, stage, getCandidates(result)) >>> 32);
+		Event event = rules == null ? Event.BREAK : rules[0].getEvent();
+		decisions[from][next] = (byte) (event == Event.NOBREAK ? NOBREAK
+			: event == Event.TRANS ? TRANS : BREAK);
+	    }
+	}
+    }
+
+    /**
+     * decision of a type pair.
+     * 
+     * @param from
+     *            ordinal of source state
+     * @param next
+     *            ordinal of next type
+     * @return BREAK, NOBREAK, TRANS or NEEDS_CONTEXT.
+     */
+    public int getDecision(int from, int next) {
+	return decisions[from][next];
     }
 
     /**
@@ -95,12 +206,12 @@ public class RuleMatcher {
      * @return -1,0,1 to indicate which one has high priority. -1 means rule1
      *         has high priority.
      */
-    private int compareRulePriority(Rule r1, Rule r2) {
+    private int compareRulePriority(ResolvedRule r1, ResolvedRule r2) {
 	int v = -(r1.getSources().length + r1.getNexts().length - (r2.getSources().length + r2.getNexts().length));
 	if (v == 0) {
-	    if (Type.ANY.getName().equals(r1.getTarget())) {
+	    if (r1.getTarget() == TypeIndex.ANY_ORDINAL) {
 		return 1;
-	    } else if (Type.ANY.getName().equals(r2.getTarget())) {
+	    } else if (r2.getTarget() == TypeIndex.ANY_ORDINAL) {
 		return 1;
 	    }
 	    return 0;
@@ -108,26 +219,6 @@ public class RuleMatcher {
 	return v;
     }
 
-    /**
-     * get rules define in FROM state with TO input.
-     * 
-     * @param from
-     *            source state
-     * @param to
-     *            next input
-     * @return rule list
-     */
-    private List<Rule> getRules(Type from, Type to) {
-	Map<Type, List<Rule>> toRules = ruleIndex.get(from);
-	if (toRules != null) {
-	    List<Rule> rules = toRules.get(to);
-	    if (rules != null) {
-		return rules;
-	    }
-	}
-	return null;
-    }
-
     /**
      * match result. it contains: 1. read size 2. target type. 3. matched rule.
      * 
@@ -146,6 +237,94 @@ public class RuleMatcher {
 	}
     }
 
+    /**
+     * result returned when no rule in a step matches.
+     */
+    private static final long NO_MATCH = -1L;
+
+    /**
+     * stage of the match when no rule matches.
+     */
+    static final int DEFAULT_STAGE = 4;
+    /**
+     * max number of candidates kept in a packed result.
+     */
+    private static final int MAX_CANDIDATES = 0xFFF;
+
+    /**
+     * pack a match result into a long.
+     * 
+     * @param rule
+     *            id of the rule, -1 if no rule matches.
+     * @param size
+     *            read size
+     * @param type
+     *            target type ordinal
+     * @param candidates
+     *            number of rules tested in the stage
+     * @return packed result, the stage is 0.
+     */
+    private static long pack(int rule, int size, int type, int candidates) {
+	return ((long) candidates << 52) | ((long) (rule + 1) << 32) | ((long) size << 16) | type;
+    }
+
+    /**
+     * rule id of a packed match result.
+     * 
+     * @param result
+     *            result returned by <code>matchPacked</code>
+     * @return id of the rule in <code>Unicode.getResolvedRules()</code>, -1 if
+     *         no rule matches and the text should break.
+     */
+    public static int getRule(long result) {
+	return ((int) (result >>> 32) & 0xFFFF) - 1;
+    }
+
+    /**
+     * read size of a packed match result.
+     * 
+     * @param result
+     *            result returned by <code>matchPacked</code>
+     * @return number of chars read.
+     */
+    public static int getSize(long result) {
+	return (int) (result >>> 16) & 0xFFFF;
+    }
+
+    /**
+     * target type of a packed match result.
+     * 
+     * @param result
+     *            result returned by <code>matchPacked</code>
+     * @return ordinal of the target type.
+     */
+    public static int getType(long result) {
+	return (int) result & 0xFFFF;
+    }
+
+    /**
+     * stage of the rule index resolved a packed match result.
+     * 
+     * @param result
+     *            result returned by <code>matchPacked</code>
+     * @return 0 to 3 for the stages of rule index, 4 if no rule matches.
+     */
+    public static int getStage(long result) {
+	return (int) (result >>> 48) & 0xF;
+    }
+
+    /**
+     * number of candidate rules tested for a packed match result.
+     * 
+     * @param result
+     *            result returned by <code>matchPacked</code>
+     * @return rules tested in all stages, a single rule in a stage is
+     *         counted without test.
+     */
+    public static int getCandidates(long result) {
+	return (int) (result >>> 52);
+    }
+
     /**
      * find the rule used to break word at index of text.
      * 
@@ -158,104 +337,185 @@ public class RuleMatcher {
      * @return result if find any rules. should never be null.
      */
     public MatchResult match(String text, int index, Type from) {
-	int nextCp = -1;
+	long result = matchPacked(text, index, types.getOrdinal(from));
+	int rule = getRule(result);
+	return new MatchResult(rule == -1 ? null : unicode.getRules().get(rule), getSize(result),
+		types.getTypeByOrdinal(getType(result)));
+    }
+
+    /**
+     * find the rule used to break word at index of text without any
+     * allocation.
+     * 
+     * The result is packed into a long, use <code>getRule</code>,
+     * <code>getSize</code> and <code>getType</code> to read it.
+     * 
+     * @param text
+     *            input text
+     * @param index
+     *            next input
+     * @param from
+     *            ordinal of source state
+     * @return packed result.
+     */
+    public long matchPacked(String text, int index, int from) {
 	int nextSize = 0;
-	Type nextType = Type.EOT;
+	int nextType = TypeIndex.EOT_ORDINAL;
 
 	if (index < text.length()) {
-	    nextCp = Character.codePointAt(text, index);
+	    int nextCp = Character.codePointAt(text, index);
 	    nextSize = Character.charCount(nextCp);
-	    nextType = unicode.getType(nextCp);
+	    nextType = types.getTypeOrdinal(nextCp);
 	}
 
-	// 1. match with from -> nextType
-	List<Rule> rules = getRules(from, nextType);
-	if (rules != null) {
-	    if (rules.size() == 1) {
-		return new MatchResult(rules.get(0), nextSize, nextType);
-	    }
-	    RuleMatcher.MatchResult result = match(rules, text, index);
-	    if (result != null) {
-		return result;
-	    }
+	long result;
+	int cell = resolved[from][nextType];
+	if (cell != 0) {
+	    result = (long) cell << 32 | (long) nextSize << 16 | nextType;
+	} else {
+	    result = matchContext(text, index, from, nextSize, nextType);
 	}
-	// 2. match with from -> Any
-	rules = getRules(from, Type.ANY);
-	if (rules != null) {
-	    if (rules.size() == 1) {
-		return new MatchResult(rules.get(0), nextSize, nextType);
-	    }
-	    RuleMatcher.MatchResult result = match(rules, text, index);
-	    if (result != null) {
-		return result;
-	    }
+	if (metrics != null) {
+	    metrics.addMatch(result, 1);
+	    metrics.addChars(Character.codePointCount(text, index, index + getSize(result)));
 	}
-	// 3. Any -> nextType
-	rules = getRules(Type.ANY, nextType);
-	if (rules != null) {
-	    if (rules.size() == 1) {
-		return new MatchResult(rules.get(0), nextSize, nextType);
-	    }
+	return result;
+    }
 
-	    RuleMatcher.MatchResult result = match(rules, text, index);
-	    if (result != null) {
-		return result;
-	    }
-	}
+    /**
+     * search the rules stage by stage, used by the type pairs need context.
+     * 
+     * @param text
+     *            input text
+     * @param index
+     *            next input
+     * @param from
+     *            ordinal of source state
+     * @param nextSize
+     *            size of next input
+     * @param nextType
+     *            type of next input
+     * @return packed result.
+     */
+    long matchContext(String text, int index, int from, int nextSize, int nextType) {
+	// 1. match with from -> nextType
+	// 2. match with from -> Any
+	// 3. Any -> nextType
 	// 4. Any -> Any
-	rules = getRules(Type.ANY, Type.ANY);
-	if (rules != null) {
-	    if (rules.size() == 1) {
-		return new MatchResult(rules.get(0), nextSize, nextType);
+	long result = NO_MATCH;
+	int stage = 0;
+	int tested = 0;
+	for (; stage < DEFAULT_STAGE; stage++) {
+	    ResolvedRule[] rules = stageRules(stage, from, nextType);
+	    result = match(rules, text, index, nextSize, nextType);
+	    if (result != NO_MATCH) {
+		break;
 	    }
-
-	    RuleMatcher.MatchResult result = match(rules, text, index);
-	    if (result != null) {
-		return result;
+	    if (rules != null) {
+		tested += rules.length;
 	    }
 	}
 	// 5. No rule, break directly
-	return new MatchResult(null, nextSize, nextType);
+	if (result == NO_MATCH) {
+	    result = pack(-1, nextSize, nextType, 0);
+	}
+	return withStage(result, stage, tested + getCandidates(result));
+    }
+
+    /**
+     * set the stage and the candidates of a packed result.
+     * 
+     * @param result
+     *            packed result
+     * @param stage
+     *            stage of the match
+     * @param candidates
+     *            number of rules tested in all stages
+     * @return packed result.
+     */
+    private static long withStage(long result, int stage, int candidates) {
+	return (result & ~(-1L << 48)) | (long) stage << 48 | (long) Math.min(candidates, MAX_CANDIDATES) << 52;
+    }
+
+    /**
+     * rules searched in a stage.
+     * 
+     * @param stage
+     *            index of the stage
+     * @param from
+     *            ordinal of source state
+     * @param nextType
+     *            type of next input
+     * @return rules sorted by priority, may be null.
+     */
+    private ResolvedRule[] stageRules(int stage, int from, int nextType) {
+	switch (stage) {
+	case 0:
+	    return ruleIndex[from][nextType];
+	case 1:
+	    return ruleIndex[from][TypeIndex.ANY_ORDINAL];
+	case 2:
+	    return ruleIndex[TypeIndex.ANY_ORDINAL][nextType];
+	default:
+	    return ruleIndex[TypeIndex.ANY_ORDINAL][TypeIndex.ANY_ORDINAL];
+	}
     }
 
     /**
      * find match rule by test if input is same with its expect pattern.
      * 
+     * a single rule is returned without test.
+     * 
      * @param rules
+     *            rules sorted by priority, may be null.
      * @param text
+     *            input text
      * @param index
-     * @return
+     *            next input
+     * @param nextSize
+     *            size of next input
+     * @param nextType
+     *            type of next input
+     * @return packed result with the number of rules tested, NO_MATCH if no
+     *         rule matches.
      */
-    private MatchResult match(List<Rule> rules, String text, int index) {
-	for (Rule rule : rules) {
+    private long match(ResolvedRule[] rules, String text, int index, int nextSize, int nextType) {
+	if (rules == null) {
+	    return NO_MATCH;
+	}
+	if (rules.length == 1) {
+	    return pack(rules[0].getId(), nextSize, nextType, 1);
+	}
+	for (int i = 0; i < rules.length; i++) {
+	    ResolvedRule rule = rules[i];
 	    int prevSize = matchPrev(rule.getSources(), text, index);
-	    int nextSize = matchNext(rule.getNexts(), text, index);
-	    if (prevSize != -1 && nextSize != -1) {
-		return new MatchResult(rule, nextSize, unicode.getType(rule.getNexts()[rule.getNexts().length - 1]));
+	    int size = matchNext(rule.getNexts(), text, index);
+	    if (prevSize != -1 && size != -1) {
+		return pack(rule.getId(), size, rule.getLastNext(), i + 1);
 	    }
 	}
-	return null;
+	return NO_MATCH;
     }
 
     /**
      * match characters before input with the pattern.
      * 
-     * @param types
-     *            pattern
+     * @param pattern
+     *            type ordinals
      * @param text
      *            text
      * @param index
      *            input
      * @return match size, -1 not match.
      */
-    private int matchPrev(String[] types, String text, int index) {
+    private int matchPrev(int[] pattern, String text, int index) {
 	int start = index;
-	for (int i = types.length - 1; i >= 0; i--) {
+	for (int i = pattern.length - 1; i >= 0; i--) {
 	    if (index <= 0) {
 		return -1;
 	    }
 	    int cp = Character.codePointBefore(text, index);
-	    if (unicode.getType(cp) != unicode.getType(types[i])) {
+	    if (types.getTypeOrdinal(cp) != pattern[i]) {
 		return -1;
 	    }
 	    index -= Character.charCount(cp);
@@ -266,22 +526,22 @@ public class RuleMatcher {
     /**
      * match characters after input with pattern.
      * 
-     * @param types
-     *            pattern
+     * @param pattern
+     *            type ordinals
      * @param text
      *            inut text
      * @param index
      *            input index
      * @return match size, -1 not match.
      */
-    private int matchNext(String[] types, String text, int index) {
+    private int matchNext(int[] pattern, String text, int index) {
 	int start = index;
-	for (int i = 0; i < types.length; i++) {
+	for (int i = 0; i < pattern.length; i++) {
 	    if (index >= text.length()) {
 		return -1;
 	    }
 	    int cp = Character.codePointAt(text, index);
-	    if (unicode.getType(cp) != unicode.getType(types[i])) {
+	    if (types.getTypeOrdinal(cp) != pattern[i]) {
 		return -1;
 	    }
 	    index += Character.charCount(cp);
@@ -0,0 +1,32 @@
+package wyan.unicode;
+
+import wyan.unicode.type.Type;
+
+/**
+ * a callback to receive word spans from <code>WordBreaker</code>.
+ * 
+ * A span is given as offsets in the text, no string is created for it. The
+ * consumer can create the word by <code>text.subSequence(start, end)</code>
+ * only if it wants to keep the word.
+ * 
+ * @see WordBreaker#forEachSpan(CharSequence, SpanConsumer)
+ * @author wyan
+ *
+ */
+@FunctionalInterface
+public interface SpanConsumer {
+
+    /**
+     * accept a word span.
+     * 
+     * @param text
+     *            text being broken.
+     * @param start
+     *            start index of the word.
+     * @param end
+     *            end index of the word, exclusive.
+     * @param kind
+     *            type of the first character in the word.
+     */
+    public void accept(CharSequence text, int start, int end, Type kind);
+}
@@ -2,6 +2,7 @@ package wyan.unicode;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,28 +13,60 @@ import wyan.unicode.type.Type;
  * 
  * HashMap to search type from name.
  * 
- * Binary search used to search type from codepoint.
+ * A two stage table is used to search type from codepoint. The code points are
+ * split into blocks of 128, the first stage maps a block to a leaf, the second
+ * stage contains the leaves, each maps the code points in a block to the type
+ * ordinals. Blocks have same types share one leaf, so the whole unicode range
+ * is covered by a few hundred leaves.
+ * 
+ * Each type gets a dense ordinal in this index, the default types are always
+ * SOT(0), EOT(1), ANY(2) and OTHER(3), the user types follow in the order they
+ * are defined.
  * 
  * @author wyan
  */
 public class TypeIndex {
 
     private static class TypeRange {
-	Type type;
+	int ordinal;
 	int start;
 	int end;
 
-	TypeRange(Type type, int start, int end) {
-	    this.type = type;
+	TypeRange(int ordinal, int start, int end) {
+	    this.ordinal = ordinal;
 	    this.start = start;
 	    this.end = end;
 	}
     }
 
+    /**
+     * bits of code point offset in a block.
+     */
+    private static final int BLOCK_SHIFT = 7;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /** ordinal of start of text */
+    public static final int SOT_ORDINAL = 0;
+    /** ordinal of end of text */
+    public static final int EOT_ORDINAL = 1;
+    /** ordinal of any character */
+    public static final int ANY_ORDINAL = 2;
+    /** ordinal of characters not defined in type list */
+    public static final int OTHER_ORDINAL = 3;
+
     /**
      * map name to character type.
      */
     private Map<String, Type> typeMap;
+    /**
+     * types sorted by ordinal.
+     */
+    private Type[] types;
+    /**
+     * map type to its ordinal.
+     */
+    private Map<Type, Integer> ordinals;
     /**
      * code point range sorted by code point.
      */
@@ -42,6 +75,14 @@ public class TypeIndex {
      * sorted start code point of each range.
      */
     private int[] codePoints;
+    /**
+     * first stage table, leaf number of each block.
+     */
+    private char[] blocks;
+    /**
+     * second stage table, type ordinals of all leaves.
+     */
+    private char[] leaves;
 
     /**
      * create index from types.
@@ -59,12 +100,61 @@ public class TypeIndex {
 	typeMap.put(Type.OTHER.getName(), Type.OTHER);
 	typeMap.put(Type.SOT.getName(), Type.SOT);
 	typeMap.put(Type.EOT.getName(), Type.EOT);
+	// assign ordinals, default types first
+	this.types = new Type[types.size() + 4];
+	this.types[SOT_ORDINAL] = Type.SOT;
+	this.types[EOT_ORDINAL] = Type.EOT;
+	this.types[ANY_ORDINAL] = Type.ANY;
+	this.types[OTHER_ORDINAL] = Type.OTHER;
+	for (int i = 0; i < types.size(); i++) {
+	    this.types[i + 4] = types.get(i);
+	}
+	ordinals = new IdentityHashMap<>();
+	for (int i = 0; i < this.types.length; i++) {
+	    ordinals.put(this.types[i], i);
+	}
 	// create range search cache, expand all code points to a array
 	// and create a binary search table
-	ranges = types.stream().flatMap(t -> t.getCodePoints().stream().map(cp -> new TypeRange(t, cp[0], cp[1])))
+	ranges = types.stream()
+		.flatMap(t -> t.getCodePoints().stream().map(cp -> new TypeRange(ordinals.get(t), cp[0], cp[1])))
 		.toArray(TypeRange[]::new);
 	Arrays.sort(ranges, (r1, r2) -> r1.start - r2.start);
 	codePoints = Arrays.stream(ranges).mapToInt(t -> t.start).toArray();
+	buildTable();
+    }
+
+    /**
+     * build the two stage table from the binary search table.
+     */
+    private void buildTable() {
+	blocks = new char[(Character.MAX_CODE_POINT + 1) >> BLOCK_SHIFT];
+	Map<String, Integer> leafIndex = new HashMap<>();
+	StringBuilder leafTable = new StringBuilder();
+	char[] leaf = new char[BLOCK_SIZE];
+	int range = -1;
+	for (int block = 0; block < blocks.length; block++) {
+	    for (int i = 0; i < BLOCK_SIZE; i++) {
+		int cp = (block << BLOCK_SHIFT) | i;
+		// move to the last range starts before the code point
+		while (range + 1 < ranges.length && ranges[range + 1].start <= cp) {
+		    range++;
+		}
+		if (range >= 0 && ranges[range].end >= cp) {
+		    leaf[i] = (char) ranges[range].ordinal;
+		} else {
+		    leaf[i] = OTHER_ORDINAL;
+		}
+	    }
+	    String key = new String(leaf);
+	    Integer number = leafIndex.get(key);
+	    if (number == null) {
+		number = leafIndex.size();
+		leafIndex.put(key, number);
+		leafTable.append(leaf);
+	    }
+	    blocks[block] = (char) number.intValue();
+	}
+	leaves = leafTable.toString().toCharArray();
     }
 
     /**
@@ -96,6 +186,36 @@ public class TypeIndex {
      *         not defined in type list.
      */
     public Type getType(int cp) {
+	return types[getTypeOrdinal(cp)];
+    }
+
+    /**
+     * ordinal of the character type of the codepoint.
+     * 
+     * @param cp
+     *            code point defined in unicode spec.
+     * @return ordinal of the code point type. ordinal of OTHER is returned if
+     *         the code point is not defined in type list.
+     */
+    public int getTypeOrdinal(int cp) {
+	int block = cp >>> BLOCK_SHIFT;
+	if (block >= blocks.length) {
+	    return OTHER_ORDINAL;
+	}
+	return leaves[(blocks[block] << BLOCK_SHIFT) | (cp & BLOCK_MASK)];
+    }
+
+    /**
+     * ordinal of the character type of the codepoint by binary search.
+     * 
+     * It is slower than <code>getTypeOrdinal</code> and used to verify the two
+     * stage table.
+     * 
+     * @param cp
+     *            code point defined in unicode spec.
+     * @return ordinal of the code point type.
+     */
+    int searchTypeOrdinal(int cp) {
 	int index = Arrays.binarySearch(codePoints, cp);
 	if (index < 0) {
 	    // insert point, cp < codePoint[insertPoint]
@@ -103,13 +223,60 @@ public class TypeIndex {
 	    // test previous range
 	    index--;
 	    if (index < 0) {
-		return Type.OTHER;
+		return OTHER_ORDINAL;
 	    }
 	    if (ranges[index].end >= cp) {
-		return ranges[index].type;
+		return ranges[index].ordinal;
 	    }
-	    return Type.OTHER;
+	    return OTHER_ORDINAL;
 	}
-	return ranges[index].type;
+	return ranges[index].ordinal;
+    }
+
+    /**
+     * ordinal of a type in this index.
+     * 
+     * @param type
+     *            character type.
+     * @return ordinal of the type, -1 if the type is not defined in this
+     *         index.
+     */
+    public int getOrdinal(Type type) {
+	Integer ordinal = ordinals.get(type);
+	return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * ordinal of a type name in this index.
+     * 
+     * @param name
+     *            type name.
+     * @return ordinal of the type, -1 if the type is not defined in this
+     *         index.
+     */
+    public int getOrdinal(String name) {
+	Type type = typeMap.get(name);
+	return type == null ? -1 : getOrdinal(type);
+    }
+
+    /**
+     * type of a ordinal.
+     * 
+     * @param ordinal
+     *            ordinal returned by <code>getOrdinal</code> or
+     *            <code>getTypeOrdinal</code>.
+     * @return type of the ordinal.
+     */
+    public Type getTypeByOrdinal(int ordinal) {
+	return types[ordinal];
+    }
+
+    /**
+     * number of types in this index, all ordinals are less than the count.
+     * 
+     * @return number of types.
+     */
+    public int getTypeCount() {
+	return types.length;
     }
 }
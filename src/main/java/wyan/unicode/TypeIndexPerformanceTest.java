@@ -0,0 +1,113 @@
+package wyan.unicode;
+
+import java.util.Random;
+
+/**
+ * compare the two stage table of <code>TypeIndex</code> with the binary
+ * search on ASCII, CJK and mixed text.
+ *
+ * @author wyan
+ *
+ */
+public class TypeIndexPerformanceTest {
+
+    private static final int SIZE = 1 << 20;
+    private static final int ROUNDS = 20;
+
+    private TypeIndex index = Unicode.getDefault().getTypeIndex();
+    private Random random = new Random(0);
+
+    private int[] asciiText() {
+	int[] cps = new int[SIZE];
+	for (int i = 0; i < cps.length; i++) {
+	    cps[i] = random.nextInt(5) == 0 ? ' ' : 'a' + random.nextInt(26);
+	}
+	return cps;
+    }
+
+    private int[] cjkText() {
+	int[] cps = new int[SIZE];
+	for (int i = 0; i < cps.length; i++) {
+	    cps[i] = 0x4E00 + random.nextInt(0x9FFF - 0x4E00);
+	}
+	return cps;
+    }
+
+    private int[] mixedText() {
+	int[] ascii = asciiText();
+	int[] cjk = cjkText();
+	int[] cps = new int[SIZE];
+	for (int i = 0; i < cps.length; i++) {
+	    switch (random.nextInt(4)) {
+	    case 0:
+		cps[i] = cjk[i];
+		break;
+	    case 1:
+		// hebrew, katakana and combining marks
+		cps[i] = new int[] { 0x05D0, 0x30A2, 0x0300, 0x3002 }[random.nextInt(4)];
+		break;
+	    default:
+		cps[i] = ascii[i];
+	    }
+	}
+	return cps;
+    }
+
+    private long search(int[] cps) {
+	long sum = 0;
+	for (int cp : cps) {
+	    sum += index.searchTypeOrdinal(cp);
+	}
+	return sum;
+    }
+
+    private long table(int[] cps) {
+	long sum = 0;
+	for (int cp : cps) {
+	    sum += index.getTypeOrdinal(cp);
+	}
+	return sum;
+    }
+
+    /**
+     * run both lookups several rounds, only the last half is measured.
+     *
+     * @param name
+     *            name of the text
+     * @param cps
+     *            code points of the text
+     */
+    private void run(String name, int[] cps) {
+	long searchTime = 0;
+	long tableTime = 0;
+	long check = 0;
+	for (int i = 0; i < ROUNDS; i++) {
+	    long start = System.nanoTime();
+	    check += search(cps);
+	    long middle = System.nanoTime();
+	    check -= table(cps);
+	    long end = System.nanoTime();
+	    if (i >= ROUNDS / 2) {
+		searchTime += middle - start;
+		tableTime += end - middle;
+	    }
+	}
+	if (check != 0) {
+	    throw new IllegalStateException("table and search return different types");
+	}
+	int measured = ROUNDS - ROUNDS / 2;
+	System.out.println(String.format("%8s\t|%8.2f\t|%8.2f", name, searchTime / 1e6 / measured,
+		tableTime / 1e6 / measured));
+    }
+
+    public void test() {
+	System.out.println("    TEXT\t| SEARCH(MS)\t| TABLE(MS)");
+	run("ASCII", asciiText());
+	run("CJK", cjkText());
+	run("MIXED", mixedText());
+    }
+
+    public static void main(String[] args) {
+	new TypeIndexPerformanceTest().test();
+    }
+}
@@ -2,11 +2,13 @@ package wyan.unicode;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import wyan.unicode.rule.ResolvedRule;
 import wyan.unicode.rule.Rule;
 import wyan.unicode.rule.RuleParser;
 import wyan.unicode.type.Type;
@@ -26,6 +28,10 @@ public class Unicode {
      * word break rules.
      */
     private List<Rule> rules;
+    /**
+     * word break rules with type ordinals.
+     */
+    private List<ResolvedRule> resolvedRules;
     /**
      * utility to find character type related information.
      */
@@ -38,10 +44,16 @@ public class Unicode {
      *            character types.
      * @param rules
      *            word breaking rules.
+     * @throws IllegalArgumentException
+     *             rules use undefined types.
      */
     public Unicode(List<Type> types, List<Rule> rules) {
 	this.rules = rules;
 	this.typeIndex = new TypeIndex(types);
+	this.resolvedRules = new ArrayList<>(rules.size());
+	for (Rule rule : rules) {
+	    resolvedRules.add(new ResolvedRule(rule, resolvedRules.size(), typeIndex::getOrdinal));
+	}
     }
 
     /**
@@ -66,6 +78,15 @@ public class Unicode {
 	return typeIndex.getType(name);
     }
 
+    /**
+     * index of the character types, it assigns a dense ordinal to each type.
+     * 
+     * @return type index.
+     */
+    public TypeIndex getTypeIndex() {
+	return typeIndex;
+    }
+
     /**
      * return all rules defined in the metadata.
      * 
@@ -75,6 +96,16 @@ public class Unicode {
 	return Collections.unmodifiableList(rules);
     }
 
+    /**
+     * return all rules with type names resolved to ordinals, the rule id is
+     * the index in the list.
+     * 
+     * @return read only list of the resolved rules.
+     */
+    public List<ResolvedRule> getResolvedRules() {
+	return Collections.unmodifiableList(resolvedRules);
+    }
+
     /**
      * default metadata defined in unicode spec.
      */
@@ -1,10 +1,18 @@
 package wyan.unicode;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 
-import wyan.unicode.rule.Rule;
 import wyan.unicode.type.Type;
+import wyan.util.Utf8;
 
 /**
  * word breaker to break text into words.
@@ -12,11 +20,24 @@ import wyan.unicode.type.Type;
  * It uses a rule based word breaking algorithm to test if there should be a
  * break between two characters. each character defined in the text is returned.
  * 
+ * The rules are compiled into a <code>RuleAutomaton</code> when the word
+ * breaker is created, so breaking a text only needs one table lookup for each
+ * character.
+ * 
  * @author wyan
  *
  */
 public class WordBreaker {
 
+    /**
+     * default number of characters in the window of a stream.
+     */
+    public static final int DEFAULT_WINDOW = 1 << 16;
+    /**
+     * default number of bytes mapped at a time from a file.
+     */
+    public static final int DEFAULT_REGION = 1 << 28;
+
     /**
      * default word breaker with rules defined in UNICODE spec.
      */
@@ -35,9 +56,26 @@ public class WordBreaker {
     }
 
     /**
-     * word breaking rules metadata.
+     * character types of the rules.
+     */
+    private TypeIndex types;
+    /**
+     * compiled word breaking rules.
      */
-    private Unicode unicode;
+    private RuleAutomaton automaton;
+    /**
+     * true if there is always a break after LF and the text after it is
+     * broken as a new text.
+     */
+    private boolean splitAfterLF;
+    /**
+     * counters of rules, null if not counted.
+     */
+    private BreakMetrics metrics;
+    /**
+     * type ordinal of each ASCII character.
+     */
+    private int[] asciiTypes;
 
     /**
      * create a word breaker with user defined rules.
@@ -46,7 +84,40 @@ public class WordBreaker {
      *            word breaking rules.
      */
     public WordBreaker(Unicode uni) {
-	this.unicode = uni;
+	this(uni, null);
+    }
+
+    /**
+     * create a word breaker counts the rules used into metrics.
+     * 
+     * The automaton is compiled with traces, each executor counts the
+     * transitions it takes in a array and adds them to the metrics at the end
+     * of text. A text not read to the end, such as an iterator not exhausted,
+     * is not counted.
+     * 
+     * @param uni
+     *            word breaking rules.
+     * @param metrics
+     *            metrics of the same rules, null if not counted.
+     */
+    public WordBreaker(Unicode uni, BreakMetrics metrics) {
+	this.types = uni.getTypeIndex();
+	this.automaton = new RuleCompiler(uni).compile(metrics != null);
+	this.splitAfterLF = automaton.isSafeSplit(types.getTypeOrdinal('\n'));
+	this.metrics = metrics;
+	this.asciiTypes = new int[128];
+	for (int c = 0; c < asciiTypes.length; c++) {
+	    asciiTypes[c] = types.getTypeOrdinal(c);
+	}
+    }
+
+    /**
+     * metrics of the word breaker.
+     * 
+     * @return metrics, null if not counted.
+     */
+    public BreakMetrics getMetrics() {
+	return metrics;
     }
 
     /**
@@ -63,27 +134,247 @@ public class WordBreaker {
 	return new WordIterator(text);
     }
 
+    /**
+     * break the text and report each word as a span.
+     * 
+     * No string is created for the words, the consumer gets the offsets of
+     * each word in the text and the type of its first character.
+     * 
+     * @param text
+     *            input text to be breaking.
+     * @param consumer
+     *            consumer of word spans, called in text order.
+     */
+    public void forEachSpan(CharSequence text, SpanConsumer consumer) {
+	if (text == null || text.length() == 0) {
+	    return;
+	}
+	execute(executor(text), consumer);
+    }
+
+    /**
+     * break a range of the text and report each word as a span.
+     * 
+     * The range is broken as a whole text, the characters around it are not
+     * used as context.
+     * 
+     * @param text
+     *            input text to be breaking.
+     * @param start
+     *            start index of the range.
+     * @param end
+     *            end index of the range, exclusive.
+     * @param consumer
+     *            consumer of word spans, the offsets are index of the text.
+     */
+    public void forEachSpan(CharSequence text, int start, int end, SpanConsumer consumer) {
+	if (start < 0 || start > end || end > text.length()) {
+	    throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + text.length());
+	}
+	if (start == end) {
+	    return;
+	}
+	execute(new RuleExecutor(text, start, end), consumer);
+    }
+
+    /**
+     * find a index the text can be split without changing the words.
+     * 
+     * Breaking the text before and after the index separately generates the
+     * same words as breaking the whole text. The split is after a LF, it is
+     * only supported if the rules always break after LF and never use the
+     * characters before it, such as WB3a.
+     * 
+     * The range is searched forward from its middle, then backward, so the
+     * split is near the middle if the range has any LF.
+     * 
+     * @param text
+     *            input text
+     * @param start
+     *            start index of the range
+     * @param end
+     *            end index of the range, exclusive
+     * @return index of the split inside the range, or -1 if not found.
+     */
+    public int findSplit(CharSequence text, int start, int end) {
+	if (!splitAfterLF) {
+	    return -1;
+	}
+	int middle = start + (end - start) / 2;
+	for (int i = middle; i < end - 1; i++) {
+	    if (text.charAt(i) == '\n') {
+		return i + 1;
+	    }
+	}
+	for (int i = Math.min(middle, end - 1) - 1; i >= start; i--) {
+	    if (text.charAt(i) == '\n') {
+		return i + 1;
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     * break the text read from a stream and report each word as a span.
+     * 
+     * @param reader
+     *            input stream, it is not closed.
+     * @param consumer
+     *            consumer of word spans.
+     * @throws IOException
+     *             text can not be read.
+     * @see #forEachSpan(Reader, SpanConsumer, int)
+     */
+    public void forEachSpan(Reader reader, SpanConsumer consumer) throws IOException {
+	forEachSpan(reader, consumer, DEFAULT_WINDOW);
+    }
+
+    /**
+     * break the text read from a stream and report each word as a span.
+     * 
+     * The text is read into a fixed size window, the memory used does not
+     * depend on the size of the stream. The state of the automaton keeps the
+     * context of the characters before the window, so the words are same as
+     * breaking the whole text at once. The window only grows if a single word
+     * is larger than half of it.
+     * 
+     * The text passed to consumer is a view of the window, the offsets are
+     * relative to the window. It is only valid during the call.
+     * 
+     * @param reader
+     *            input stream, it is not closed.
+     * @param consumer
+     *            consumer of word spans.
+     * @param window
+     *            initial number of characters in the window.
+     * @throws IOException
+     *             text can not be read.
+     */
+    public void forEachSpan(Reader reader, SpanConsumer consumer, int window) throws IOException {
+	if (window < 2) {
+	    throw new IllegalArgumentException("window must be greater than 1");
+	}
+	try {
+	    execute(new StreamExecutor(reader, window), consumer);
+	} catch (UncheckedIOException ex) {
+	    throw ex.getCause();
+	}
+    }
+
+    private void execute(RuleExecutor executor, SpanConsumer consumer) {
+	while (!executor.isDone()) {
+	    if (executor.execute()) {
+		consumer.accept(executor.input, executor.start(), executor.end(), executor.kind());
+	    }
+	}
+    }
+
+    /**
+     * break UTF-8 text and report each word as a span of bytes.
+     * 
+     * The code points are decoded from the bytes directly, the text is never
+     * converted to UTF-16. A malformed sequence is read as one U+FFFD, the
+     * same as a <code>Reader</code>.
+     * 
+     * The buffer passed to consumer is a slice from the position to the limit
+     * of the bytes, the offsets are relative to it.
+     * 
+     * @param bytes
+     *            UTF-8 text from position to limit, the position is not
+     *            changed.
+     * @param consumer
+     *            consumer of word spans, called in text order.
+     */
+    public void forEachSpan(ByteBuffer bytes, ByteSpanConsumer consumer) {
+	if (bytes == null || !bytes.hasRemaining()) {
+	    return;
+	}
+	executeBytes(new ByteExecutor(bytes.slice()), consumer);
+    }
+
+    /**
+     * break a UTF-8 encoded file and report each word as a span of bytes.
+     * 
+     * @param channel
+     *            file to be read from the start, it is not closed.
+     * @param consumer
+     *            consumer of word spans.
+     * @throws IOException
+     *             file can not be mapped.
+     * @see #forEachSpan(FileChannel, ByteSpanConsumer, int)
+     */
+    public void forEachSpan(FileChannel channel, ByteSpanConsumer consumer) throws IOException {
+	forEachSpan(channel, consumer, DEFAULT_REGION);
+    }
+
+    /**
+     * break a UTF-8 encoded file and report each word as a span of bytes.
+     * 
+     * The file is mapped into memory region by region, the next region starts
+     * at the current word, so no bytes are copied. The region only grows if a
+     * single word is larger than half of it.
+     * 
+     * The buffer passed to consumer is the mapped region, it is only valid
+     * during the call.
+     * 
+     * @param channel
+     *            file to be read from the start, it is not closed.
+     * @param consumer
+     *            consumer of word spans.
+     * @param region
+     *            initial number of bytes mapped at a time.
+     * @throws IOException
+     *             file can not be mapped.
+     */
+    public void forEachSpan(FileChannel channel, ByteSpanConsumer consumer, int region) throws IOException {
+	if (region < 4 * Utf8.MAX_SIZE) {
+	    throw new IllegalArgumentException("region must be at least " + 4 * Utf8.MAX_SIZE);
+	}
+	try {
+	    executeBytes(new ByteExecutor(channel, region), consumer);
+	} catch (UncheckedIOException ex) {
+	    throw ex.getCause();
+	}
+    }
+
+    private void executeBytes(ByteExecutor executor, ByteSpanConsumer consumer) {
+	while (!executor.isDone()) {
+	    if (executor.execute()) {
+		consumer.accept(executor.bytes, executor.start(), executor.end(), executor.kind());
+	    }
+	}
+    }
+
+    /**
+     * create a executor to break the text.
+     * 
+     * @param text
+     *            input text
+     * @return executor at start of the text.
+     */
+    RuleExecutor executor(CharSequence text) {
+	return new RuleExecutor(text);
+    }
+
     private class WordIterator implements Iterator<String> {
 
 	private RuleExecutor executor;
 
 	private WordIterator(String text) {
 	    assert text != null;
-	    this.executor = new RuleExecutor(text);
+	    this.executor = executor(text);
 	}
 
 	@Override
 	public boolean hasNext() {
-	    return executor.getType() != Type.EOT;
+	    return !executor.isDone();
 	}
 
 	@Override
 	public String next() {
-	    if (hasNext()) {
-		while (executor.getType() != Type.EOT) {
-		    if (executor.execute()) {
-			return executor.word();
-		    }
+	    while (!executor.isDone()) {
+		if (executor.execute()) {
+		    return executor.word();
 		}
 	    }
 	    return null;
@@ -91,30 +382,103 @@ public class WordBreaker {
     }
 
     /**
-     * a executor to execute the word breaking rules.
+     * a executor to run the compiled rules.
+     * 
+     * It reads one character in each step and moves the automaton. The break
+     * found by a step may be several characters before the current one, the
+     * start index of the recent characters are kept in a ring buffer.
+     * 
+     * The executor does not allocate any object while reading the text, the
+     * word is only created when <code>word()</code> is called.
+     * 
+     * A run of ASCII characters of one type, such as the letters of a English
+     * word, is read in bulk if the automaton loops in the current state
+     * without any break. Only the type of each character is tested by a 128
+     * entries table, the state and the ring are updated once at the end of the
+     * run. Other characters, such as '.' and ',' between letters, go through
+     * the automaton one by one.
      * 
      * @author wyan
      *
      */
-    private class RuleExecutor {
+    class RuleExecutor {
 
-	private String input;
-	private Type type;
+	private CharSequence input;
+	/**
+	 * end index of the input.
+	 */
+	private int limit;
 	private int index;
+	private int state;
+
+	/**
+	 * start index of recent characters, indexed by character count.
+	 */
+	private int[] marks;
+	/**
+	 * type ordinal of recent characters, indexed by character count.
+	 */
+	private int[] kinds;
+	/**
+	 * size of the rings is a power of 2, so the mask replaces modulo.
+	 */
+	private int ringMask;
+	private int count;
+	private int breakFlag;
+	private int delay;
+
+	/**
+	 * break flags left at end of text.
+	 */
+	private int tail;
+	private boolean flushing;
+	private boolean done;
 
-	private String word;
+	/**
+	 * start of the word being read.
+	 */
 	private int wordStart;
+	private int wordKind;
+	/**
+	 * range of the last generated word.
+	 */
+	private int start;
+	private int end;
+	private int kind;
+	/**
+	 * number of times each transition is taken, null if not counted.
+	 */
+	private long[] hits;
+	private long words;
 
-	RuleMatcher matcher;
+	RuleExecutor(CharSequence input) {
+	    this(input, 0, input.length());
+	}
 
-	RuleExecutor(String input) {
+	RuleExecutor(CharSequence input, int start, int limit) {
 	    this.input = input;
-	    this.type = Type.SOT;
-	    this.matcher = new RuleMatcher(unicode);
+	    this.limit = limit;
+	    this.index = start;
+	    this.wordStart = start;
+	    this.state = automaton.start();
+	    this.delay = automaton.getDelay();
+	    this.breakFlag = automaton.getBreakFlag();
+	    this.ringMask = Integer.highestOneBit(delay * 2 + 1) - 1;
+	    this.marks = new int[ringMask + 1];
+	    this.kinds = new int[ringMask + 1];
+	    Arrays.fill(marks, start);
+	    if (metrics != null) {
+		this.hits = new long[automaton.getStateCount() * automaton.getWidth()];
+	    }
 	}
 
-	public Type getType() {
-	    return type;
+	/**
+	 * test if all words are generated.
+	 * 
+	 * @return true if the end of text is reached.
+	 */
+	public boolean isDone() {
+	    return done;
 	}
 
 	/**
@@ -123,100 +487,410 @@ public class WordBreaker {
 	 * @return word generated.
 	 */
 	public String word() {
-	    return word;
+	    return input.subSequence(start, end).toString();
 	}
 
 	/**
-	 * read next character and execute the rule.
+	 * type of the first character in the word if the execute return true.
+	 * 
+	 * @return type of the word.
+	 */
+	public Type kind() {
+	    return types.getTypeByOrdinal(kind);
+	}
+
+	/**
+	 * start index of the word if the execute return true.
+	 * 
+	 * @return start index of the word.
+	 */
+	public int start() {
+	    return start;
+	}
+
+	/**
+	 * end index of the word if the execute return true.
+	 * 
+	 * @return end index of the word, exclusive.
+	 */
+	public int end() {
+	    return end;
+	}
+
+	/**
+	 * read next character and move the automaton.
 	 * 
 	 * @return true if there is a word break, the caller can get the word
 	 *         through <code>word()</code> API. false there is no word
 	 *         break.
 	 */
 	public boolean execute() {
-	    RuleMatcher.MatchResult result = matcher.match(input, index, type);
-	    return execute(result.rule, result.size, result.type);
+	    if (index < limit || fill()) {
+		char c = input.charAt(index);
+		if (c < asciiTypes.length) {
+		    int type = asciiTypes[c];
+		    if (!isLoop(type)) {
+			return step(type, 1);
+		    }
+		    int end = index + 1;
+		    while (end < limit && (c = input.charAt(end)) < asciiTypes.length && asciiTypes[c] == type) {
+			end++;
+		    }
+		    skip(type, end);
+		    return false;
+		}
+		int cp = Character.codePointAt(input, index);
+		return step(types.getTypeOrdinal(cp), Character.charCount(cp));
+	    }
+	    return executeEnd();
 	}
 
 	/**
-	 * execute breaking rule.
+	 * test if the automaton stays in the current state without any break
+	 * when reading the type.
 	 * 
-	 * @param nextSize
-	 * @param nextType
-	 * @return
+	 * @param type
+	 *            type ordinal of next character
+	 * @return true if the transition is a loop.
 	 */
-	private boolean executeBreak(int nextSize, Type nextType) {
-	    if (index > wordStart) {
-		word = input.substring(wordStart, index);
-	    } else {
-		word = null;
+	final boolean isLoop(int type) {
+	    return automaton.next(state, type) == state << RuleAutomaton.FLAG_BITS;
+	}
+
+	/**
+	 * read a run of single unit characters of the same type, the
+	 * transition of the type must be a loop.
+	 * 
+	 * Only the last characters are kept in the ring, the older ones can
+	 * not be used by a break.
+	 * 
+	 * @param type
+	 *            type ordinal of the characters
+	 * @param end
+	 *            end index of the run
+	 */
+	final void skip(int type, int end) {
+	    if (hits != null) {
+		hits[state + type] += end - index;
+	    }
+	    if (count == 0) {
+		wordKind = type;
 	    }
-	    wordStart = index;
-	    index += nextSize;
-	    type = nextType;
-	    return word != null;
+	    int from = Math.max(index, end - marks.length);
+	    count += from - index;
+	    for (int i = from; i < end; i++) {
+		marks[count & ringMask] = i;
+		kinds[count & ringMask] = type;
+		count++;
+	    }
+	    index = end;
 	}
 
 	/**
-	 * execute none breaking rule.
+	 * move the automaton with a character at current index.
 	 * 
-	 * @param nextSize
-	 * @param nextType
-	 * @return
+	 * @param type
+	 *            type ordinal of the character
+	 * @param size
+	 *            length of the character in input
+	 * @return true if there is a word break.
 	 */
-	private boolean executeNoBreak(int nextSize, Type nextType) {
-	    index += nextSize;
-	    setTargetType(nextType);
-	    word = null;
+	boolean step(int type, int size) {
+	    if (hits != null) {
+		hits[state + type]++;
+	    }
+	    int entry = automaton.next(state, type);
+	    state = RuleAutomaton.nextState(entry);
+	    if (count == 0) {
+		wordKind = type;
+	    }
+	    marks[count & ringMask] = index;
+	    kinds[count & ringMask] = type;
+	    count++;
+	    index += size;
+	    if ((entry & breakFlag) != 0) {
+		return executeBreak(delay);
+	    }
 	    return false;
 	}
 
 	/**
-	 * execute transfer rule.
+	 * read more text when all characters in input are read.
 	 * 
-	 * @param nextSize
-	 * @param nextType
-	 * @return
+	 * @return true if there are more characters in input.
 	 */
-	private boolean executeTransfer(int nextSize, Type nextType) {
-	    index += nextSize;
-	    setTargetType(nextType);
-	    word = null;
+	boolean fill() {
 	    return false;
 	}
 
 	/**
-	 * execute a rule with nextSize input with type nextType.
+	 * length of the whole input.
+	 * 
+	 * @return index of the end of text.
+	 */
+	int length() {
+	    return limit;
+	}
+
+	/**
+	 * drop the input before the current word, all offsets are moved back.
+	 * 
+	 * @return number of dropped units in input.
+	 */
+	int discard() {
+	    int shift = wordStart;
+	    index -= shift;
+	    wordStart = 0;
+	    for (int i = 0; i < marks.length; i++) {
+		marks[i] -= shift;
+	    }
+	    return shift;
+	}
+
+	/**
+	 * execute the breaks left at end of text, one break for each call.
 	 * 
-	 * @param rule
-	 *            rule to be executed.
-	 * @param nextSize
-	 *            input size.
-	 * @param nextType
-	 *            last character type.
-	 * @return true, word genreated, false otherwise.
+	 * @return true if a word is generated.
 	 */
-	private boolean execute(Rule rule, int nextSize, Type nextType) {
-	    if (rule == null) {
-		return executeBreak(nextSize, nextType);
+	boolean executeEnd() {
+	    if (!flushing) {
+		if (hits != null) {
+		    hits[state + TypeIndex.EOT_ORDINAL]++;
+		}
+		int entry = automaton.next(state, TypeIndex.EOT_ORDINAL);
+		state = RuleAutomaton.nextState(entry);
+		tail = entry & RuleAutomaton.FLAG_MASK;
+		flushing = true;
+	    }
+	    while (tail != 0) {
+		// the highest flag is the oldest character
+		int back = 31 - Integer.numberOfLeadingZeros(tail);
+		tail &= ~(1 << back);
+		if (executeBreak(back)) {
+		    return true;
+		}
 	    }
-	    switch (rule.getEvent()) {
-	    case BREAK:
-		return executeBreak(nextSize, nextType);
-	    case NOBREAK:
-		return executeNoBreak(nextSize, nextType);
-	    case TRANS:
-		return executeTransfer(nextSize, unicode.getType(rule.getTarget()));
-	    default:
-		throw new IllegalStateException("unknow event:" + rule.getEvent());
+	    done = true;
+	    boolean generated = executeBreak(length(), TypeIndex.EOT_ORDINAL);
+	    if (hits != null) {
+		metrics.addTransitions(automaton, hits);
+		metrics.addTokens(words);
 	    }
+	    return generated;
+	}
+
+	/**
+	 * start index of a recent character.
+	 * 
+	 * @param back
+	 *            0 for the last character read, 1 for the one before it.
+	 * @return start index of the character.
+	 */
+	private int mark(int back) {
+	    return marks[(count - 1 - back) & ringMask];
+	}
+
+	/**
+	 * execute a break before a recent character.
+	 * 
+	 * @param back
+	 *            0 for the last character read, 1 for the one before it.
+	 * @return true if a word is generated.
+	 */
+	private boolean executeBreak(int back) {
+	    return executeBreak(mark(back), kinds[(count - 1 - back) & ringMask]);
 	}
 
-	private void setTargetType(Type targetType) {
-	    if (targetType != Type.ANY) {
-		type = targetType;
+	/**
+	 * execute a break at index.
+	 * 
+	 * @param breakIndex
+	 *            index of the break.
+	 * @param nextKind
+	 *            type ordinal of the character at the break.
+	 * @return true if a word is generated.
+	 */
+	private boolean executeBreak(int breakIndex, int nextKind) {
+	    boolean generated = breakIndex > wordStart;
+	    if (generated) {
+		start = wordStart;
+		end = breakIndex;
+		kind = wordKind;
+		words++;
+	    }
+	    wordStart = breakIndex;
+	    wordKind = nextKind;
+	    return generated;
+	}
+    }
+
+    /**
+     * a executor reads text from a stream into a window.
+     * 
+     * When all characters in the window are read, the characters before the
+     * current word are dropped and the rest is moved to the start of the
+     * window. A high surrogate at the end of the window is kept until its low
+     * surrogate is read.
+     * 
+     * @author wyan
+     *
+     */
+    private class StreamExecutor extends RuleExecutor {
+
+	private Reader reader;
+	private char[] window;
+	/**
+	 * number of characters in the window.
+	 */
+	private int size;
+	private boolean eof;
+
+	StreamExecutor(Reader reader, int window) {
+	    super("");
+	    this.reader = reader;
+	    this.window = new char[window];
+	}
+
+	@Override
+	boolean fill() {
+	    if (eof) {
+		return false;
+	    }
+	    compact();
+	    try {
+		while (true) {
+		    if (size == window.length) {
+			window = Arrays.copyOf(window, window.length * 2);
+		    }
+		    int n = reader.read(window, size, window.length - size);
+		    if (n < 0) {
+			eof = true;
+			super.input = CharBuffer.wrap(window, 0, size);
+			super.limit = size;
+			return super.index < size;
+		    }
+		    size += n;
+		    int available = size > 0 && Character.isHighSurrogate(window[size - 1]) ? size - 1 : size;
+		    if (available > super.index) {
+			super.input = CharBuffer.wrap(window, 0, available);
+			super.limit = available;
+			return true;
+		    }
+		}
+	    } catch (IOException ex) {
+		throw new UncheckedIOException(ex);
+	    }
+	}
+
+	/**
+	 * drop characters before the current word.
+	 */
+	private void compact() {
+	    int shift = discard();
+	    System.arraycopy(window, shift, window, 0, size - shift);
+	    size -= shift;
+	    if (size > window.length / 2) {
+		window = Arrays.copyOf(window, window.length * 2);
 	    }
 	}
     }
 
+    /**
+     * a executor reads code points from UTF-8 bytes.
+     * 
+     * The bytes are either a buffer in memory or regions mapped from a file.
+     * When less than a whole code point is left in a region, the next region
+     * is mapped from the start of the current word.
+     * 
+     * @author wyan
+     *
+     */
+    private class ByteExecutor extends RuleExecutor {
+
+	private ByteBuffer bytes;
+	/**
+	 * true if the bytes contain the end of text.
+	 */
+	private boolean last;
+	/**
+	 * index to map next region, a whole code point is available before
+	 * it.
+	 */
+	private int fillIndex;
+
+	private FileChannel channel;
+	private long fileSize;
+	private int region;
+	/**
+	 * file offset of the bytes.
+	 */
+	private long offset;
+
+	ByteExecutor(ByteBuffer bytes) {
+	    super("");
+	    this.bytes = bytes;
+	    super.limit = bytes.limit();
+	    this.last = true;
+	    this.fillIndex = super.limit;
+	}
+
+	ByteExecutor(FileChannel channel, int region) throws IOException {
+	    super("");
+	    this.channel = channel;
+	    this.fileSize = channel.size();
+	    this.region = region;
+	    map(0);
+	}
+
+	private void map(long offset) throws IOException {
+	    this.offset = offset;
+	    this.bytes = channel.map(MapMode.READ_ONLY, offset, Math.min(region, fileSize - offset));
+	    super.limit = bytes.limit();
+	    this.last = offset + super.limit == fileSize;
+	    this.fillIndex = last ? super.limit : super.limit - Utf8.MAX_SIZE + 1;
+	}
+
+	@Override
+	public boolean execute() {
+	    int i = super.index;
+	    if (i >= fillIndex && fill()) {
+		i = super.index;
+	    }
+	    if (i < super.limit) {
+		int b = bytes.get(i);
+		if (b >= 0) {
+		    int type = asciiTypes[b];
+		    if (!isLoop(type)) {
+			return step(type, 1);
+		    }
+		    int end = i + 1;
+		    while (end < super.limit && (b = bytes.get(end)) >= 0 && asciiTypes[b] == type) {
+			end++;
+		    }
+		    skip(type, end);
+		    return false;
+		}
+		int packed = Utf8.next(bytes, i, super.limit);
+		return step(types.getTypeOrdinal(Utf8.codePoint(packed)), Utf8.size(packed));
+	    }
+	    return executeEnd();
+	}
+
+	@Override
+	boolean fill() {
+	    if (last) {
+		return false;
+	    }
+	    int kept = super.limit - super.wordStart;
+	    if (kept > region / 2) {
+		region = (int) Math.min((long) region * 2, Integer.MAX_VALUE);
+	    }
+	    try {
+		map(offset + discard());
+	    } catch (IOException ex) {
+		throw new UncheckedIOException(ex);
+	    }
+	    return true;
+	}
+    }
 }
@@ -10,10 +10,32 @@ package wyan.unicode;
 public class WordNormalizer implements IWordNormalizer {
 
     public String normalize(String word) {
-	if (word == null || word.length() == 0) {
+	if (word == null || word.length() == 0 || isIgnored(word.charAt(0))) {
 	    return null;
 	}
-	switch (Character.getType(word.charAt(0))) {
+	return word;
+    }
+
+    /**
+     * the word is returned as is, it never creates a string.
+     */
+    @Override
+    public CharSequence normalize(CharSequence word) {
+	if (word == null || word.length() == 0 || isIgnored(word.charAt(0))) {
+	    return null;
+	}
+	return word;
+    }
+
+    /**
+     * test if a word starts with the character should be ignored.
+     * 
+     * @param c
+     *            first character of the word
+     * @return true if the word is not meaningful.
+     */
+    private static boolean isIgnored(char c) {
+	switch (Character.getType(c)) {
 	case Character.COMBINING_SPACING_MARK:
 	case Character.CONNECTOR_PUNCTUATION:
 	case Character.CONTROL:
@@ -44,8 +66,8 @@ public class WordNormalizer implements IWordNormalizer {
 	    // Character.TITLECASE_LETTER:
 	    // Character.UNASSIGNED:
 	    // Character.UPPERCASE_LETTER:
-	    return null;
+	    return true;
 	}
-	return word;
+	return false;
     }
 }
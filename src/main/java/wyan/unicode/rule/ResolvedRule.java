@@ -0,0 +1,106 @@
+package wyan.unicode.rule;
+
+import java.util.function.ToIntFunction;
+
+import wyan.unicode.rule.Rule.Event;
+
+/**
+ * a rule with type names resolved to type ordinals.
+ *
+ * <code>Rule</code> keeps the type names defined in the rule file, a resolved
+ * rule keeps the ordinals of the types, so matching a rule only compares
+ * integers.
+ *
+ * @author wyan
+ *
+ */
+public class ResolvedRule {
+
+    private Rule rule;
+    private int id;
+    private int[] sources;
+    private int[] nexts;
+    private int target;
+
+    /**
+     * resolve a rule.
+     *
+     * @param rule
+     *            rule to be resolved.
+     * @param id
+     *            id of the rule, it is the index of the rule in rule list.
+     * @param ordinals
+     *            function to find type ordinal by name, -1 if the type is not
+     *            defined.
+     * @throws IllegalArgumentException
+     *             type in the rule is not defined.
+     */
+    public ResolvedRule(Rule rule, int id, ToIntFunction<String> ordinals) {
+	this.rule = rule;
+	this.id = id;
+	this.sources = resolve(rule.getSources(), ordinals);
+	this.nexts = resolve(rule.getNexts(), ordinals);
+	this.target = resolve(rule.getTarget(), ordinals);
+    }
+
+    private int[] resolve(String[] names, ToIntFunction<String> ordinals) {
+	int[] resolved = new int[names.length];
+	for (int i = 0; i < names.length; i++) {
+	    resolved[i] = resolve(names[i], ordinals);
+	}
+	return resolved;
+    }
+
+    private int resolve(String name, ToIntFunction<String> ordinals) {
+	int ordinal = ordinals.applyAsInt(name);
+	if (ordinal < 0) {
+	    throw new IllegalArgumentException("unknown type " + name + " in rule " + rule);
+	}
+	return ordinal;
+    }
+
+    public Rule getRule() {
+	return rule;
+    }
+
+    public int getId() {
+	return id;
+    }
+
+    public String getName() {
+	return rule.getName();
+    }
+
+    public int[] getSources() {
+	return sources;
+    }
+
+    public int getLastSource() {
+	return sources[sources.length - 1];
+    }
+
+    public int[] getNexts() {
+	return nexts;
+    }
+
+    public int getFirstNext() {
+	return nexts[0];
+    }
+
+    public int getLastNext() {
+	return nexts[nexts.length - 1];
+    }
+
+    public int getTarget() {
+	return target;
+    }
+
+    public Event getEvent() {
+	return rule.getEvent();
+    }
+
+    @Override
+    public String toString() {
+	return rule.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package wyan.util;
+
+/**
+ * a mutable view of a range in a char sequence.
+ * 
+ * The characters are not copied, so the view is only valid while the
+ * underlying text is unchanged. It can be reused to view different ranges
+ * without creating new objects, call <code>toString()</code> to get a copy of
+ * the characters.
+ * 
+ * @author wyan
+ *
+ */
+public class CharSpan implements CharSequence {
+
+    private CharSequence text;
+    private int start;
+    private int end;
+
+    /**
+     * create a empty span.
+     */
+    public CharSpan() {
+	this("", 0, 0);
+    }
+
+    /**
+     * create a span of the text.
+     * 
+     * @param text
+     *            underlying text
+     * @param start
+     *            start index of the span
+     * @param end
+     *            end index of the span, exclusive
+     */
+    public CharSpan(CharSequence text, int start, int end) {
+	set(text, start, end);
+    }
+
+    /**
+     * view another range.
+     * 
+     * @param text
+     *            underlying text
+     * @param start
+     *            start index of the span
+     * @param end
+     *            end index of the span, exclusive
+     * @return this span
+     * @throws IndexOutOfBoundsException
+     *             the range is not in the text.
+     */
+    public CharSpan set(CharSequence text, int start, int end) {
+	if (start < 0 || start > end || end > text.length()) {
+	    throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + text.length());
+	}
+	this.text = text;
+	this.start = start;
+	this.end = end;
+	return this;
+    }
+
+    public CharSequence getText() {
+	return text;
+    }
+
+    public int getStart() {
+	return start;
+    }
+
+    public int getEnd() {
+	return end;
+    }
+
+    @Override
+    public int length() {
+	return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+	if (index < 0 || index >= end - start) {
+	    throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+	}
+	return text.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+	if (start < 0 || start > end || end > length()) {
+	    throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+	}
+	return text.subSequence(this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+	return text.subSequence(start, end).toString();
+    }
+}
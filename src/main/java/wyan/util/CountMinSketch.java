@@ -0,0 +1,155 @@
+package wyan.util;
+
+/**
+ * a Count-Min sketch to estimate occurrences of words in fixed memory.
+ * 
+ * A word increases one counter in each row, the estimate is the lowest of
+ * them, so it is never less than the real occurrences. The counters are
+ * updated conservatively, only counters equal to the estimate are increased,
+ * it reduces the over estimation caused by other words in same counters.
+ * 
+ * The row indexes are derived from one hash code of the word by double
+ * hashing, so a word is hashed once for all rows.
+ * 
+ * @author wyan
+ *
+ */
+public class CountMinSketch {
+
+    /**
+     * number of rows.
+     */
+    public static final int DEPTH = 4;
+    /**
+     * minimum number of counters in a row.
+     */
+    public static final int MIN_WIDTH = 64;
+
+    /**
+     * counters row by row.
+     */
+    private final int[] table;
+    private final int mask;
+    private long total;
+
+    /**
+     * create a sketch fits in memory.
+     * 
+     * @param memory
+     *            bytes of memory, the width of rows is the largest power of 2
+     *            fits in it.
+     */
+    public CountMinSketch(long memory) {
+	long width = Math.max(MIN_WIDTH, Math.min(1 << 28, memory / (DEPTH * 4)));
+	this.mask = Integer.highestOneBit((int) width) - 1;
+	this.table = new int[(mask + 1) * DEPTH];
+    }
+
+    /**
+     * add one occurrence of a word.
+     * 
+     * @param text
+     *            text contains the word
+     * @param start
+     *            start index of the word
+     * @param end
+     *            end index of the word, exclusive
+     * @return estimated occurrences of the word after adding.
+     */
+    public long add(CharSequence text, int start, int end) {
+	return increase(SpanHash.hash(text, start, end));
+    }
+
+    /**
+     * add one occurrence of a word.
+     * 
+     * @param chars
+     *            characters contains the word
+     * @param start
+     *            start index of the word
+     * @param end
+     *            end index of the word, exclusive
+     * @return estimated occurrences of the word after adding.
+     */
+    public long add(char[] chars, int start, int end) {
+	return increase(SpanHash.hash(chars, start, end));
+    }
+
+    /**
+     * estimate occurrences of a word.
+     * 
+     * @param text
+     *            text contains the word
+     * @param start
+     *            start index of the word
+     * @param end
+     *            end index of the word, exclusive
+     * @return upper bound of occurrences.
+     */
+    public long estimate(CharSequence text, int start, int end) {
+	return estimate(SpanHash.hash(text, start, end));
+    }
+
+    /**
+     * estimate occurrences of a word.
+     * 
+     * @param chars
+     *            characters contains the word
+     * @param start
+     *            start index of the word
+     * @param end
+     *            end index of the word, exclusive
+     * @return upper bound of occurrences.
+     */
+    public long estimate(char[] chars, int start, int end) {
+	return estimate(SpanHash.hash(chars, start, end));
+    }
+
+    /**
+     * number of words added.
+     * 
+     * @return total occurrences.
+     */
+    public long getTotal() {
+	return total;
+    }
+
+    /**
+     * number of counters in a row.
+     * 
+     * @return width of rows.
+     */
+    public int getWidth() {
+	return mask + 1;
+    }
+
+    private long increase(int hash) {
+	total++;
+	int h1 = SpanHash.mix(hash);
+	int h2 = SpanHash.mix(hash ^ 0x5BD1E995) | 1;
+	int min = Integer.MAX_VALUE;
+	for (int row = 0, h = h1; row < table.length; row += mask + 1, h += h2) {
+	    min = Math.min(min, table[row + (h & mask)]);
+	}
+	if (min == Integer.MAX_VALUE) {
+	    // saturated
+	    return min;
+	}
+	for (int row = 0, h = h1; row < table.length; row += mask + 1, h += h2) {
+	    if (table[row + (h & mask)] == min) {
+		table[row + (h & mask)] = min + 1;
+	    }
+	}
+	return min + 1;
+    }
+
+    private long estimate(int hash) {
+	int h1 = SpanHash.mix(hash);
+	int h2 = SpanHash.mix(hash ^ 0x5BD1E995) | 1;
+	int min = Integer.MAX_VALUE;
+	for (int row = 0, h = h1; row < table.length; row += mask + 1, h += h2) {
+	    min = Math.min(min, table[row + (h & mask)]);
+	}
+	return min;
+    }
+}
@@ -0,0 +1,439 @@
+package wyan.util;
+
+import java.util.Arrays;
+
+/**
+ * a table to count words given as character spans.
+ * 
+ * The table uses open addressing with linear probing, the slots only keep the
+ * id of words. The characters of all words are kept in one shared arena, and
+ * the offset, length, hash and count of a word are kept in parallel int
+ * arrays indexed by id. So no object is created for a word, the arrays only
+ * grow when a new distinct word is added.
+ * 
+ * The id of a word is the number of distinct words added before it, so ids
+ * keep the order of first occurrence.
+ * 
+ * The table holds at most <code>MAX_WORDS</code> distinct words of
+ * <code>MAX_CHARS</code> characters in total, adding a new word to a full
+ * table throws <code>IllegalStateException</code>.
+ * 
+ * @author wyan
+ *
+ */
+public class CountTable implements SpanTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * bucket selection is used if n * BUCKET_RATIO is not less than size.
+     */
+    private static final int BUCKET_RATIO = 64;
+    /**
+     * max number of distinct words, the slots are twice of it and the largest
+     * power of 2 an array can have.
+     */
+    static final int MAX_WORDS = 1 << 29;
+    /**
+     * max total length of distinct words, some VMs reserve header words in an
+     * array.
+     */
+    static final int MAX_CHARS = Integer.MAX_VALUE - 8;
+    /**
+     * average length of words assumed when the capacity is computed from
+     * memory.
+     */
+    private static final int AVERAGE_WORD_LENGTH = 8;
+    /**
+     * bytes used by a word: at most 4 slots, offset, length, hash and count
+     * with room to double, and characters with room to double, if words are
+     * not longer than 8 characters in average.
+     */
+    private static final int WORD_BYTES = 4 * 4 + 2 * 4 * 4 + 2 * 2 * AVERAGE_WORD_LENGTH;
+
+    /**
+     * id + 1 of the word in each slot, 0 if the slot is empty.
+     */
+    private int[] slots;
+    private char[] arena;
+    private int arenaSize;
+
+    private int[] offsets;
+    private int[] lengths;
+    private int[] hashes;
+    private int[] counts;
+    private int size;
+
+    /**
+     * create a empty table.
+     */
+    public CountTable() {
+	this.slots = new int[INITIAL_CAPACITY * 2];
+	this.arena = new char[INITIAL_CAPACITY * 8];
+	this.offsets = new int[INITIAL_CAPACITY];
+	this.lengths = new int[INITIAL_CAPACITY];
+	this.hashes = new int[INITIAL_CAPACITY];
+	this.counts = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * number of distinct words can be kept in memory, if words are not longer
+     * than 8 characters in average.
+     * 
+     * @param memory
+     *            bytes of memory
+     * @return number of words, at least 16.
+     */
+    public static int capacityOf(long memory) {
+	return (int) Math.max(INITIAL_CAPACITY, Math.min(MAX_WORDS, memory / WORD_BYTES));
+    }
+
+    @Override
+    public int add(CharSequence text, int start, int end) {
+	return add(text, start, end, 1);
+    }
+
+    @Override
+    public int add(char[] chars, int start, int end) {
+	return add(chars, start, end, 1);
+    }
+
+    /**
+     * add occurrences of a word.
+     * 
+     * @param text
+     *            text contains the word
+     * @param start
+     *            start index of the word
+     * @param end
+     *            end index of the word, exclusive
+     * @param count
+     *            number of occurrences
+     * @return id of the word.
+     */
+    public int add(CharSequence text, int start, int end, int count) {
+	int hash = SpanHash.hash(text, start, end);
+	int mask = slots.length - 1;
+	for (int slot = SpanHash.mix(hash) & mask;; slot = (slot + 1) & mask) {
+	    int id = slots[slot] - 1;
+	    if (id < 0) {
+		id = insert(hash, end - start);
+		for (int i = start, j = offsets[id]; i < end; i++, j++) {
+		    arena[j] = text.charAt(i);
+		}
+		place(slot, id, count);
+		return id;
+	    }
+	    if (hashes[id] == hash && SpanHash.equals(arena, offsets[id], lengths[id], text, start, end)) {
+		counts[id] += count;
+		return id;
+	    }
+	}
+    }
+
+    /**
+     * add occurrences of a word.
+     * 
+     * @param chars
+     *            characters contains the word
+     * @param start
+     *            start index of the word
+     * @param end
+     *            end index of the word, exclusive
+     * @param count
+     *            number of occurrences
+     * @return id of the word.
+     */
+    public int add(char[] chars, int start, int end, int count) {
+	int hash = SpanHash.hash(chars, start, end);
+	int mask = slots.length - 1;
+	for (int slot = SpanHash.mix(hash) & mask;; slot = (slot + 1) & mask) {
+	    int id = slots[slot] - 1;
+	    if (id < 0) {
+		id = insert(hash, end - start);
+		System.arraycopy(chars, start, arena, offsets[id], end - start);
+		place(slot, id, count);
+		return id;
+	    }
+	    if (hashes[id] == hash && SpanHash.equals(arena, offsets[id], lengths[id], chars, start, end)) {
+		counts[id] += count;
+		return id;
+	    }
+	}
+    }
+
+    /**
+     * add all words of another table, the new words are added in the order
+     * of their ids in the other table.
+     * 
+     * @param other
+     *            table to be merged.
+     */
+    public void addAll(CountTable other) {
+	for (int id = 0; id < other.size; id++) {
+	    addWord(other, id, other.counts[id]);
+	}
+    }
+
+    /**
+     * add a word of another table.
+     * 
+     * @param other
+     *            table contains the word
+     * @param id
+     *            id of the word in the other table
+     * @param count
+     *            count to be added, may be negative
+     * @return id of the word in this table.
+     */
+    int addWord(CountTable other, int id, int count) {
+	return add(other.arena, other.offsets[id], other.offsets[id] + other.lengths[id], count);
+    }
+
+    /**
+     * subtract counts of all words of another table, the words must be
+     * already in this table. Words are kept in the table even if their counts
+     * become 0.
+     * 
+     * @param other
+     *            table to be subtracted.
+     */
+    public void subtractAll(CountTable other) {
+	for (int id = 0; id < other.size; id++) {
+	    addWord(other, id, -other.counts[id]);
+	}
+    }
+
+    /**
+     * remove all words, the arrays are kept for new words.
+     */
+    public void clear() {
+	Arrays.fill(slots, 0);
+	size = 0;
+	arenaSize = 0;
+    }
+
+    /**
+     * find a word.
+     * 
+     * @param text
+     *            text contains the word
+     * @param start
+     *            start index of the word
+     * @param end
+     *            end index of the word, exclusive
+     * @return id of the word, -1 if the word is not in the table.
+     */
+    public int find(CharSequence text, int start, int end) {
+	int hash = SpanHash.hash(text, start, end);
+	int mask = slots.length - 1;
+	for (int slot = SpanHash.mix(hash) & mask;; slot = (slot + 1) & mask) {
+	    int id = slots[slot] - 1;
+	    if (id < 0) {
+		return -1;
+	    }
+	    if (hashes[id] == hash && SpanHash.equals(arena, offsets[id], lengths[id], text, start, end)) {
+		return id;
+	    }
+	}
+    }
+
+    /**
+     * number of distinct words.
+     * 
+     * @return size of the table.
+     */
+    public int size() {
+	return size;
+    }
+
+    /**
+     * occurrences of a word.
+     * 
+     * @param id
+     *            id of the word
+     * @return count of the word.
+     */
+    public int getCount(int id) {
+	return counts[id];
+    }
+
+    /**
+     * create the string of a word.
+     * 
+     * @param id
+     *            id of the word
+     * @return the word.
+     */
+    public String getWord(int id) {
+	return new String(arena, offsets[id], lengths[id]);
+    }
+
+    /**
+     * ids of n words with highest counts, words with same count are ordered
+     * by id.
+     * 
+     * The selection uses a heap if n is small, the cost is near linear as
+     * most words are smaller than the root of heap. If n is large relative to
+     * the number of words, a bucket selection by count is used.
+     * 
+     * @param n
+     *            number of words
+     * @return ids of the words, highest count first.
+     */
+    public int[] top(int n) {
+	return (long) n * BUCKET_RATIO >= size ? topByBucket(n) : topByHeap(n);
+    }
+
+    /**
+     * select top n words by a bounded heap, O(size * log(n)).
+     * 
+     * @param n
+     *            number of words
+     * @return ids of the words, highest count first.
+     */
+    public int[] topByHeap(int n) {
+	// same counts are ordered by id in reverse, so the smaller id is kept
+	IntHeap heap = new IntHeap(n);
+	for (int id = 0; id < size; id++) {
+	    heap.offer(counts[id], id);
+	}
+	int[] ids = new int[heap.size()];
+	for (int i = 0; i < ids.length; i++) {
+	    ids[i] = heap.poll();
+	}
+	return ids;
+    }
+
+    /**
+     * select top n words by counting sort, O(size).
+     * 
+     * Counts less than the number of words are put into buckets, most words
+     * occur only a few times. The words with larger counts are at most
+     * <code>total / size</code>, they are sorted directly.
+     * 
+     * @param n
+     *            number of words
+     * @return ids of the words, highest count first.
+     */
+    public int[] topByBucket(int n) {
+	n = Math.min(n, size);
+	int buckets = Math.max(size, 1);
+	int[] starts = new int[buckets + 1];
+	int large = 0;
+	for (int id = 0; id < size; id++) {
+	    if (counts[id] >= buckets) {
+		large++;
+	    } else {
+		starts[counts[id]]++;
+	    }
+	}
+	// words of large counts, packed as IntHeap so the order is count then
+	// id in reverse.
+	long[] larges = new long[large];
+	large = 0;
+	for (int id = 0; id < size; id++) {
+	    if (counts[id] >= buckets) {
+		larges[large++] = (long) counts[id] << 32 | (Integer.MAX_VALUE - id);
+	    }
+	}
+	Arrays.sort(larges);
+	int[] ids = new int[n];
+	int selected = 0;
+	for (int i = larges.length - 1; i >= 0 && selected < n; i--) {
+	    ids[selected++] = Integer.MAX_VALUE - (int) larges[i];
+	}
+	if (selected == n) {
+	    return ids;
+	}
+	// start of each count in the result, higher count first
+	int position = selected;
+	int threshold = 0;
+	for (int c = buckets - 1; c >= 0; c--) {
+	    int count = starts[c];
+	    starts[c] = position;
+	    position += count;
+	    if (position >= n) {
+		threshold = c;
+		break;
+	    }
+	}
+	// ids are visited in order, so same counts are ordered by id
+	for (int id = 0; id < size && selected < n; id++) {
+	    int c = counts[id];
+	    if (c >= threshold && c < buckets && starts[c] < n) {
+		ids[starts[c]++] = id;
+		selected++;
+	    }
+	}
+	return ids;
+    }
+
+    /**
+     * allocate a id and the room of characters for a new word.
+     */
+    private int insert(int hash, int length) {
+	if (size == offsets.length) {
+	    int capacity = grow(size, size + 1L, MAX_WORDS);
+	    offsets = Arrays.copyOf(offsets, capacity);
+	    lengths = Arrays.copyOf(lengths, capacity);
+	    hashes = Arrays.copyOf(hashes, capacity);
+	    counts = Arrays.copyOf(counts, capacity);
+	}
+	if (arenaSize + length > arena.length) {
+	    arena = Arrays.copyOf(arena, grow(arena.length, (long) arenaSize + length, MAX_CHARS));
+	}
+	int id = size++;
+	offsets[id] = arenaSize;
+	lengths[id] = length;
+	hashes[id] = hash;
+	arenaSize += length;
+	return id;
+    }
+
+    /**
+     * new length of a full array, doubled but not more than the max length.
+     * 
+     * @param length
+     *            current length
+     * @param required
+     *            length required
+     * @param max
+     *            max length of the array
+     * @return new length not less than required.
+     * @throws IllegalStateException
+     *             the required length is more than the max.
+     */
+    static int grow(int length, long required, int max) {
+	if (required > max) {
+	    throw new IllegalStateException("count table is full, " + required + " exceeds " + max);
+	}
+	return (int) Math.min(max, Math.max(2L * length, required));
+    }
+
+    /**
+     * put a new word into a empty slot, the slots are rebuilt to keep load
+     * factor under 0.5.
+     */
+    private void place(int slot, int id, int count) {
+	slots[slot] = id + 1;
+	counts[id] = count;
+	if (size * 2 > slots.length) {
+	    rehash();
+	}
+    }
+
+    private void rehash() {
+	int[] old = slots;
+	slots = new int[old.length * 2];
+	int mask = slots.length - 1;
+	for (int v : old) {
+	    if (v != 0) {
+		int slot = SpanHash.mix(hashes[v - 1]) & mask;
+		while (slots[slot] != 0) {
+		    slot = (slot + 1) & mask;
+		}
+		slots[slot] = v;
+	    }
+	}
+    }
+}
@@ -1,41 +1,48 @@
 package wyan.util;
 
 import java.util.AbstractQueue;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.NoSuchElementException;
-import java.util.TreeMap;
 
 /**
- * A heap based on TreeMap.
+ * A bounded heap based on array.
  * 
  * The heap has maximum size, if the offered number exceed the limit, the
  * minimum value will be removed and the capacity is unchanged.
  * 
- * The heap uses a <code>TreeMap&lt;T,List&lt;T&gt;&gt;</code> to save internal
- * values.
+ * The values are kept in a binary min-heap, so the minimum value to be
+ * removed is always at the root. When the maximum value is polled, the array
+ * is sorted once in ascending order, a sorted array is still a valid min-heap
+ * and the maximum values are taken from its end.
  * 
- * The complexity of all operation are log(n)
+ * The complexity of the operations are
  * <ol>
- * <li>peek() : log(n)</li>
- * <li>poll() : log(n)</li>
  * <li>offer() : log(n)</li>
+ * <li>peek() / poll() : n*log(n) for the first call after offer, then 1</li>
  * </ol>
+ * 
+ * Which one of equal values is removed or polled first is not specified, use
+ * a comparator without equal values to get a stable order.
  *
  * @param <T>
  *            values saved in the heap
  */
 public class Heap<T> extends AbstractQueue<T> {
 
+    private static final int INITIAL_CAPACITY = 16;
+
     private long modifyCount;
-    private TreeMap<T, LinkedList<T>> valueTree;
+    private Object[] values;
     private int maxSize;
     private int valueSize;
     private Comparator<T> comparator;
+    /**
+     * true if the values are in ascending order.
+     */
+    private boolean sorted;
 
     /**
      * create a heap with max size using default comparator.
@@ -61,7 +68,8 @@ public class Heap<T> extends AbstractQueue<T> {
 	this.maxSize = maxSize;
 	this.valueSize = 0;
 	this.comparator = c;
-	this.valueTree = new TreeMap<>(c);
+	this.values = new Object[Math.min(maxSize, INITIAL_CAPACITY)];
+	this.sorted = true;
     }
 
     private static class DefaultComparator<T> implements Comparator<T> {
@@ -79,65 +87,79 @@ public class Heap<T> extends AbstractQueue<T> {
 	    throw new NullPointerException();
 	}
 	if (valueSize == maxSize) {
-	    if (comparator.compare(valueTree.firstKey(), e) >= 0) {
+	    if (comparator.compare(value(0), e) >= 0) {
 		return false;
 	    }
+	    // replace the minimum value
+	    modifyCount++;
+	    sorted = false;
+	    siftDown(0, e);
+	    return true;
 	}
-	addValue(e);
-	if (valueSize > maxSize) {
-	    T v = removeMinValue();
-	    if (v == e) {
-		return false;
-	    }
+	modifyCount++;
+	if (valueSize == values.length) {
+	    values = Arrays.copyOf(values, (int) Math.min((long) values.length * 2, maxSize));
+	}
+	int i = valueSize++;
+	if (sorted && i > 0 && comparator.compare(value(i - 1), e) > 0) {
+	    sorted = false;
 	}
+	siftUp(i, e);
 	return true;
     }
 
+    @SuppressWarnings("unchecked")
+    private T value(int i) {
+	return (T) values[i];
+    }
+
     /**
-     * add a value to heap.
-     * 
-     * @param t
-     *            value to be added.
+     * move a value up from a empty slot until its parent is not greater.
      */
-    private void addValue(T t) {
-	modifyCount++;
-	LinkedList<T> values = valueTree.get(t);
-	if (values == null) {
-	    values = new LinkedList<>();
-	    valueTree.put(t, values);
+    private void siftUp(int i, T e) {
+	while (i > 0) {
+	    int parent = (i - 1) >>> 1;
+	    T p = value(parent);
+	    if (comparator.compare(p, e) <= 0) {
+		break;
+	    }
+	    values[i] = p;
+	    i = parent;
 	}
-	values.add(t);
-	valueSize++;
+	values[i] = e;
     }
 
     /**
-     * remove the minimum value in the heap
-     * 
-     * @return minimum value in the heap.
+     * move a value down from a slot until its children are not less.
      */
-    private T removeMinValue() {
-	modifyCount++;
-	Map.Entry<T, LinkedList<T>> entry = valueTree.firstEntry();
-	if (entry.getValue().size() == 1) {
-	    valueTree.remove(entry.getKey());
+    private void siftDown(int i, T e) {
+	int half = valueSize >>> 1;
+	while (i < half) {
+	    int child = 2 * i + 1;
+	    T c = value(child);
+	    int right = child + 1;
+	    if (right < valueSize && comparator.compare(c, value(right)) > 0) {
+		child = right;
+		c = value(child);
+	    }
+	    if (comparator.compare(e, c) <= 0) {
+		break;
+	    }
+	    values[i] = c;
+	    i = child;
 	}
-	valueSize--;
-	return entry.getValue().removeLast();
+	values[i] = e;
     }
 
     /**
-     * remove the max value from the heap.
-     * 
-     * @return maximum value in the heap.
+     * sort the values in ascending order, it is still a valid heap.
      */
-    private T removeMaxValue() {
-	modifyCount++;
-	Map.Entry<T, LinkedList<T>> entry = valueTree.lastEntry();
-	if (entry.getValue().size() == 1) {
-	    valueTree.remove(entry.getKey());
+    @SuppressWarnings("unchecked")
+    private void sort() {
+	if (!sorted) {
+	    Arrays.sort((T[]) values, 0, valueSize, comparator);
+	    sorted = true;
 	}
-	valueSize--;
-	return entry.getValue().removeFirst();
     }
 
     @Override
@@ -145,7 +167,11 @@ public class Heap<T> extends AbstractQueue<T> {
 	if (valueSize == 0) {
 	    return null;
 	}
-	return removeMaxValue();
+	sort();
+	modifyCount++;
+	T v = value(--valueSize);
+	values[valueSize] = null;
+	return v;
     }
 
     @Override
@@ -153,39 +179,22 @@ public class Heap<T> extends AbstractQueue<T> {
 	if (valueSize == 0) {
 	    return null;
 	}
-	return valueTree.lastEntry().getValue().getFirst();
+	sort();
+	return value(valueSize - 1);
     }
 
+    /**
+     * iterator of the values in no particular order.
+     */
     @Override
     public Iterator<T> iterator() {
-	if (this.valueSize == 0) {
-	    return new Iterator<T>() {
-
-		@Override
-		public boolean hasNext() {
-		    return false;
-		}
-
-		@Override
-		public T next() {
-		    throw new NoSuchElementException();
-		}
-	    };
-	}
 	return new Iterator<T>() {
 	    long modifyId = Heap.this.modifyCount;
-	    Iterator<Entry<T, LinkedList<T>>> keyIter = valueTree.entrySet().iterator();
-	    Iterator<T> valueIter = keyIter.next().getValue().iterator();
+	    int index = 0;
 
 	    @Override
 	    public boolean hasNext() {
-		if (!valueIter.hasNext()) {
-		    if (!keyIter.hasNext()) {
-			return false;
-		    }
-		    valueIter = keyIter.next().getValue().iterator();
-		}
-		return valueIter.hasNext();
+		return index < valueSize;
 	    }
 
 	    @Override
@@ -193,7 +202,10 @@ public class Heap<T> extends AbstractQueue<T> {
 		if (modifyId != modifyCount) {
 		    throw new ConcurrentModificationException();
 		}
-		return valueIter.next();
+		if (index >= valueSize) {
+		    throw new NoSuchElementException();
+		}
+		return value(index++);
 	    }
 	};
     }
@@ -202,5 +214,4 @@ public class Heap<T> extends AbstractQueue<T> {
     public int size() {
 	return valueSize;
     }
-
 }
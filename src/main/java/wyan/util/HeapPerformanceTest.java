@@ -0,0 +1,175 @@
+package wyan.util;
+
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * compare the array based <code>Heap</code> and <code>IntHeap</code> with the
+ * former heap based on <code>TreeMap</code>.
+ * 
+ * Each round offers the same random counts to a heap of size n and polls all
+ * of them, n is from 10 to 1000000.
+ *
+ * @author wyan
+ *
+ */
+public class HeapPerformanceTest {
+
+    private static final int OFFERS = 2000000;
+    private static final int ROUNDS = 6;
+
+    private int[] keys = new Random(0).ints(OFFERS, 0, 100000).toArray();
+    private Integer[] boxed = new Integer[OFFERS];
+
+    private HeapPerformanceTest() {
+	for (int i = 0; i < OFFERS; i++) {
+	    boxed[i] = i;
+	}
+    }
+
+    /**
+     * ids ordered by count, then the smaller id first.
+     */
+    private Comparator<Integer> comparator() {
+	return (id1, id2) -> {
+	    int c = Integer.compare(keys[id1], keys[id2]);
+	    return c != 0 ? c : Integer.compare(id2, id1);
+	};
+    }
+
+    private long treeHeap(int n) {
+	TreeHeap<Integer> heap = new TreeHeap<>(n, comparator());
+	for (Integer id : boxed) {
+	    heap.offer(id);
+	}
+	long sum = 0;
+	Integer id;
+	while ((id = heap.poll()) != null) {
+	    sum += id;
+	}
+	return sum;
+    }
+
+    private long heap(int n) {
+	Heap<Integer> heap = new Heap<>(n, comparator());
+	for (Integer id : boxed) {
+	    heap.offer(id);
+	}
+	long sum = 0;
+	Integer id;
+	while ((id = heap.poll()) != null) {
+	    sum += id;
+	}
+	return sum;
+    }
+
+    private long intHeap(int n) {
+	IntHeap heap = new IntHeap(n);
+	for (int id = 0; id < keys.length; id++) {
+	    heap.offer(keys[id], id);
+	}
+	long sum = 0;
+	while (!heap.isEmpty()) {
+	    sum += heap.poll();
+	}
+	return sum;
+    }
+
+    /**
+     * run all heaps several rounds, only the last half is measured.
+     *
+     * @param n
+     *            max size of the heaps
+     */
+    private void run(int n) {
+	long[] times = new long[3];
+	for (int i = 0; i < ROUNDS; i++) {
+	    long t0 = System.nanoTime();
+	    long expected = treeHeap(n);
+	    long t1 = System.nanoTime();
+	    long actual = heap(n);
+	    long t2 = System.nanoTime();
+	    long primitive = intHeap(n);
+	    long t3 = System.nanoTime();
+	    if (actual != expected || primitive != expected) {
+		throw new IllegalStateException("heaps return different values");
+	    }
+	    if (i >= ROUNDS / 2) {
+		times[0] += t1 - t0;
+		times[1] += t2 - t1;
+		times[2] += t3 - t2;
+	    }
+	}
+	int measured = ROUNDS - ROUNDS / 2;
+	System.out.println(String.format("%8d\t|%8.2f\t|%8.2f\t|%8.2f", n, times[0] / 1e6 / measured,
+		times[1] / 1e6 / measured, times[2] / 1e6 / measured));
+    }
+
+    public void test() {
+	System.out.println("       N\t| TREE(MS)\t| ARRAY(MS)\t| INT(MS)");
+	for (int n = 10; n <= 1000000; n *= 10) {
+	    run(n);
+	}
+    }
+
+    public static void main(String[] args) {
+	new HeapPerformanceTest().test();
+    }
+
+    /**
+     * the former heap based on <code>TreeMap&lt;T,List&lt;T&gt;&gt;</code>,
+     * only offer and poll are kept for comparison.
+     */
+    private static class TreeHeap<T> {
+
+	private TreeMap<T, LinkedList<T>> valueTree;
+	private int maxSize;
+	private int valueSize;
+	private Comparator<T> comparator;
+
+	TreeHeap(int maxSize, Comparator<T> c) {
+	    this.maxSize = maxSize;
+	    this.comparator = c;
+	    this.valueTree = new TreeMap<>(c);
+	}
+
+	boolean offer(T e) {
+	    if (valueSize == maxSize) {
+		if (comparator.compare(valueTree.firstKey(), e) >= 0) {
+		    return false;
+		}
+	    }
+	    LinkedList<T> values = valueTree.get(e);
+	    if (values == null) {
+		values = new LinkedList<>();
+		valueTree.put(e, values);
+	    }
+	    values.add(e);
+	    valueSize++;
+	    if (valueSize > maxSize) {
+		Map.Entry<T, LinkedList<T>> entry = valueTree.firstEntry();
+		if (entry.getValue().size() == 1) {
+		    valueTree.remove(entry.getKey());
+		}
+		valueSize--;
+		return entry.getValue().removeLast() != e;
+	    }
+	    return true;
+	}
+
+	T poll() {
+	    if (valueSize == 0) {
+		return null;
+	    }
+	    Map.Entry<T, LinkedList<T>> entry = valueTree.lastEntry();
+	    if (entry.getValue().size() == 1) {
+		valueTree.remove(entry.getKey());
+	    }
+	    valueSize--;
+	    return entry.getValue().removeFirst();
+	}
+    }
+}
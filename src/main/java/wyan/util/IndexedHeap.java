@@ -0,0 +1,228 @@
+package wyan.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A bounded heap of int ids with int keys, the key of a id in the heap can be
+ * increased.
+ * 
+ * It keeps the entries with highest keys as <code>IntHeap</code>, entries with
+ * same key are ordered by id in reverse. The position of each id in the heap
+ * is indexed, so a id is found in O(1) and its key is increased in
+ * O(log(maxSize)) by sifting it down the min-heap.
+ * 
+ * If keys only increase, such as counts of words, offering the new key of a id
+ * each time it changes keeps the heap as the top entries of all ids. A id not
+ * in the heap can only enter it by its own increase, which is offered.
+ * 
+ * @author wyan
+ *
+ */
+public class IndexedHeap {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * entries packed as <code>IntHeap</code>, the minimum is the root.
+     */
+    private long[] entries;
+    /**
+     * position + 1 of each id in entries, 0 if the id is not in the heap.
+     */
+    private int[] positions;
+    private int maxSize;
+    private int size;
+
+    /**
+     * create a heap with max size
+     * 
+     * @param maxSize
+     *            max size of the heap.
+     */
+    public IndexedHeap(int maxSize) {
+	if (maxSize < 1) {
+	    throw new IllegalArgumentException("max size must be greater than 0");
+	}
+	this.maxSize = maxSize;
+	this.entries = new long[Math.min(maxSize, INITIAL_CAPACITY)];
+	this.positions = new int[INITIAL_CAPACITY];
+    }
+
+    private static long pack(int key, int id) {
+	return (long) key << 32 | ((Integer.MAX_VALUE - id) & 0xFFFFFFFFL);
+    }
+
+    private static int key(long entry) {
+	return (int) (entry >> 32);
+    }
+
+    private static int id(long entry) {
+	return Integer.MAX_VALUE - (int) entry;
+    }
+
+    /**
+     * offer a id with its key, the key of a id already in the heap is
+     * replaced, it must not decrease.
+     * 
+     * @param id
+     *            id of the entry, not negative
+     * @param key
+     *            key of the entry
+     * @return true if the id is kept in the heap.
+     */
+    public boolean offer(int id, int key) {
+	long e = pack(key, id);
+	int position = position(id);
+	if (position >= 0) {
+	    if (e < entries[position]) {
+		throw new IllegalArgumentException("key decreased:" + key);
+	    }
+	    siftDown(position, e);
+	    return true;
+	}
+	if (size == maxSize) {
+	    if (entries[0] >= e) {
+		return false;
+	    }
+	    positions[id(entries[0])] = 0;
+	    index(id);
+	    siftDown(0, e);
+	    return true;
+	}
+	if (size == entries.length) {
+	    entries = Arrays.copyOf(entries, (int) Math.min(maxSize, size * 2L));
+	}
+	index(id);
+	siftUp(size++, e);
+	return true;
+    }
+
+    /**
+     * test if a id is in the heap.
+     * 
+     * @param id
+     *            id of the entry
+     * @return true if the id is in the heap.
+     */
+    public boolean contains(int id) {
+	return position(id) >= 0;
+    }
+
+    /**
+     * key of a id in the heap.
+     * 
+     * @param id
+     *            id of the entry
+     * @return key of the id.
+     * @throws NoSuchElementException
+     *             the id is not in the heap.
+     */
+    public int getKey(int id) {
+	int position = position(id);
+	if (position < 0) {
+	    throw new NoSuchElementException("id not in heap:" + id);
+	}
+	return key(entries[position]);
+    }
+
+    /**
+     * id of the minimum entry, it is removed first if the heap is full.
+     * 
+     * @return id of the root.
+     * @throws NoSuchElementException
+     *             the heap is empty.
+     */
+    public int peekId() {
+	if (size == 0) {
+	    throw new NoSuchElementException();
+	}
+	return id(entries[0]);
+    }
+
+    /**
+     * key of the minimum entry.
+     * 
+     * @return key of the root.
+     * @throws NoSuchElementException
+     *             the heap is empty.
+     */
+    public int peekKey() {
+	if (size == 0) {
+	    throw new NoSuchElementException();
+	}
+	return key(entries[0]);
+    }
+
+    /**
+     * ids in the heap, the maximum first. The heap is not changed.
+     * 
+     * @return ids in descending order.
+     */
+    public int[] toSortedArray() {
+	long[] sorted = Arrays.copyOf(entries, size);
+	Arrays.sort(sorted);
+	int[] ids = new int[size];
+	for (int i = 0; i < size; i++) {
+	    ids[i] = id(sorted[size - 1 - i]);
+	}
+	return ids;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    private int position(int id) {
+	return id < positions.length ? positions[id] - 1 : -1;
+    }
+
+    /**
+     * make room for a id in positions.
+     */
+    private void index(int id) {
+	if (id >= positions.length) {
+	    positions = Arrays.copyOf(positions, Math.max(positions.length * 2, id + 1));
+	}
+    }
+
+    private void set(int position, long e) {
+	entries[position] = e;
+	positions[id(e)] = position + 1;
+    }
+
+    private void siftUp(int position, long e) {
+	while (position > 0) {
+	    int parent = (position - 1) >>> 1;
+	    long p = entries[parent];
+	    if (p <= e) {
+		break;
+	    }
+	    set(position, p);
+	    position = parent;
+	}
+	set(position, e);
+    }
+
+    private void siftDown(int position, long e) {
+	int half = size >>> 1;
+	while (position < half) {
+	    int child = 2 * position + 1;
+	    long c = entries[child];
+	    int right = child + 1;
+	    if (right < size && entries[right] < c) {
+		c = entries[child = right];
+	    }
+	    if (e <= c) {
+		break;
+	    }
+	    set(position, c);
+	    position = child;
+	}
+	set(position, e);
+    }
+}
@@ -0,0 +1,184 @@
+package wyan.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A bounded heap of int keys with int values, no value is boxed.
+ * 
+ * It has the same behavior as <code>Heap</code>: if the offered number exceed
+ * the maximum size, the minimum entry is removed, and the maximum entry is
+ * polled first.
+ * 
+ * Entries are ordered by key, entries with same key are ordered by value in
+ * reverse. So if the values are ids in order of first occurrence, the entry
+ * offered first is kept and polled first among same keys. A entry is packed
+ * in a long and the entries are kept in a binary min-heap of long.
+ * 
+ * @author wyan
+ *
+ */
+public class IntHeap {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] entries;
+    private int maxSize;
+    private int size;
+    /**
+     * true if the entries are in ascending order.
+     */
+    private boolean sorted;
+
+    /**
+     * create a heap with max size
+     * 
+     * @param maxSize
+     *            max size of the heap.
+     */
+    public IntHeap(int maxSize) {
+	if (maxSize < 1) {
+	    throw new IllegalArgumentException("max size must be greater than 0");
+	}
+	this.maxSize = maxSize;
+	this.entries = new long[Math.min(maxSize, INITIAL_CAPACITY)];
+	this.sorted = true;
+    }
+
+    /**
+     * pack a entry, the order of packed entries is the order of entries.
+     */
+    private static long pack(int key, int value) {
+	return (long) key << 32 | ((Integer.MAX_VALUE - value) & 0xFFFFFFFFL);
+    }
+
+    private static int key(long entry) {
+	return (int) (entry >> 32);
+    }
+
+    private static int value(long entry) {
+	return Integer.MAX_VALUE - (int) entry;
+    }
+
+    /**
+     * offer a entry.
+     * 
+     * @param key
+     *            key of the entry
+     * @param value
+     *            value of the entry
+     * @return true if the entry is kept in the heap.
+     */
+    public boolean offer(int key, int value) {
+	long e = pack(key, value);
+	if (size == maxSize) {
+	    if (entries[0] >= e) {
+		return false;
+	    }
+	    sorted = false;
+	    siftDown(0, e);
+	    return true;
+	}
+	if (size == entries.length) {
+	    entries = Arrays.copyOf(entries, (int) Math.min((long) entries.length * 2, maxSize));
+	}
+	int i = size++;
+	if (sorted && i > 0 && entries[i - 1] > e) {
+	    sorted = false;
+	}
+	siftUp(i, e);
+	return true;
+    }
+
+    private void siftUp(int i, long e) {
+	while (i > 0) {
+	    int parent = (i - 1) >>> 1;
+	    long p = entries[parent];
+	    if (p <= e) {
+		break;
+	    }
+	    entries[i] = p;
+	    i = parent;
+	}
+	entries[i] = e;
+    }
+
+    private void siftDown(int i, long e) {
+	int half = size >>> 1;
+	while (i < half) {
+	    int child = 2 * i + 1;
+	    long c = entries[child];
+	    int right = child + 1;
+	    if (right < size && c > entries[right]) {
+		child = right;
+		c = entries[child];
+	    }
+	    if (e <= c) {
+		break;
+	    }
+	    entries[i] = c;
+	    i = child;
+	}
+	entries[i] = e;
+    }
+
+    private void sort() {
+	if (!sorted) {
+	    Arrays.sort(entries, 0, size);
+	    sorted = true;
+	}
+    }
+
+    /**
+     * remove the maximum entry.
+     * 
+     * @return value of the maximum entry.
+     * @throws NoSuchElementException
+     *             the heap is empty.
+     */
+    public int poll() {
+	if (size == 0) {
+	    throw new NoSuchElementException();
+	}
+	sort();
+	return value(entries[--size]);
+    }
+
+    /**
+     * key of the maximum entry.
+     * 
+     * @return key of the maximum entry.
+     * @throws NoSuchElementException
+     *             the heap is empty.
+     */
+    public int peekKey() {
+	if (size == 0) {
+	    throw new NoSuchElementException();
+	}
+	sort();
+	return key(entries[size - 1]);
+    }
+
+    /**
+     * value of the maximum entry.
+     * 
+     * @return value of the maximum entry.
+     * @throws NoSuchElementException
+     *             the heap is empty.
+     */
+    public int peekValue() {
+	if (size == 0) {
+	    throw new NoSuchElementException();
+	}
+	sort();
+	return value(entries[size - 1]);
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public boolean isEmpty() {
+	return size == 0;
+    }
+}
@@ -0,0 +1,474 @@
+package wyan.util;
+
+import java.util.Arrays;
+
+/**
+ * a count table keeps the words ordered by count while they are added, so
+ * the top words can be read without scanning the whole table.
+ * 
+ * The words with same count are kept in a bucket, the buckets are linked in
+ * order of count, highest first. The ids in a bucket are kept in a treap
+ * ordered by id, so words with same count are in the order of their first
+ * occurrence, same as <code>CountTable.top(n)</code>. The children and
+ * priority of each id and the links of each bucket are kept in int arrays,
+ * so no object is created for a word.
+ * 
+ * Adding a word moves it from its bucket to the bucket of the next count,
+ * which is next to it in the list, in O(log(bucket size)) expected. A word
+ * alone in its bucket, as most frequent words are, only changes the count of
+ * the bucket. A new word has the lowest count 1 and the highest id, it is put
+ * at the end of the last bucket. Reading n top words walks the buckets from
+ * the highest count and visits only the first n ids, O(n + log(size)).
+ * 
+ * Counts can be subtracted too, so the table can rank the words of a sliding
+ * window. A word is moved down over the buckets of the counts between, a word
+ * with count 0 is kept in the table but not in any bucket, so it is not
+ * returned as a top word.
+ * 
+ * @author wyan
+ *
+ */
+public class RankTable implements SpanTable {
+
+    private static final int NIL = -1;
+
+    private CountTable counts = new CountTable();
+    /**
+     * children of each id, the left child at 2 * id has less ids in the
+     * bucket, the right child at 2 * id + 1 has greater ids.
+     */
+    private int[] children = new int[32];
+    /**
+     * heap priority of each id, a parent has higher priority than its
+     * children.
+     */
+    private int[] priorities = new int[16];
+    /**
+     * bucket of each id.
+     */
+    private int[] buckets = new int[16];
+    /**
+     * state of the xorshift generator of priorities.
+     */
+    private int seed = 0x2545F491;
+
+    /**
+     * count of the words in each bucket.
+     */
+    private int[] bucketCounts = new int[16];
+    /**
+     * root of the id tree of each bucket.
+     */
+    private int[] roots = new int[16];
+    /**
+     * bucket of next higher count, NIL for the first bucket.
+     */
+    private int[] higher = new int[16];
+    /**
+     * bucket of next lower count, NIL for the last bucket. It links the free
+     * buckets too.
+     */
+    private int[] lower = new int[16];
+    /**
+     * bucket of the highest count, NIL if the table is empty.
+     */
+    private int first = NIL;
+    /**
+     * bucket of the lowest count, NIL if the table is empty.
+     */
+    private int last = NIL;
+    /**
+     * first unused bucket, NIL if all buckets are used.
+     */
+    private int free = NIL;
+    /**
+     * number of buckets ever allocated.
+     */
+    private int bucketSize;
+    /**
+     * number of ids have a priority.
+     */
+    private int nodeSize;
+    /**
+     * number of words with count greater than 0, they are in buckets.
+     */
+    private int live;
+
+    @Override
+    public int add(CharSequence text, int start, int end) {
+	int id = counts.add(text, start, end);
+	move(id, counts.getCount(id) - 1);
+	return id;
+    }
+
+    @Override
+    public int add(char[] chars, int start, int end) {
+	int id = counts.add(chars, start, end);
+	move(id, counts.getCount(id) - 1);
+	return id;
+    }
+
+    /**
+     * add all words of another table, the new words are added in the order
+     * of their ids in the other table. The order is rebuilt in
+     * O(size * log(size)).
+     * 
+     * @param other
+     *            table to be merged.
+     */
+    public void addAll(RankTable other) {
+	addAll(other.counts);
+    }
+
+    /**
+     * add all words of a count table, the new words are added in the order
+     * of their ids in the other table. The order is rebuilt in
+     * O(size * log(size)).
+     * 
+     * @param other
+     *            table to be merged.
+     */
+    public void addAll(CountTable other) {
+	counts.addAll(other);
+	int size = counts.size();
+	if (size > priorities.length) {
+	    grow(size);
+	}
+	for (; nodeSize < size; nodeSize++) {
+	    priorities[nodeSize] = nextPriority();
+	}
+	// packed as CountTable.topByBucket, count then id in reverse
+	long[] packed = new long[size];
+	for (int id = 0; id < size; id++) {
+	    packed[id] = (long) counts.getCount(id) << 32 | (Integer.MAX_VALUE - id);
+	}
+	Arrays.sort(packed);
+	first = NIL;
+	last = NIL;
+	free = NIL;
+	bucketSize = 0;
+	live = 0;
+	// highest count first, ids of same count are ascending
+	for (int i = size - 1; i >= 0 && (int) (packed[i] >>> 32) > 0; i--) {
+	    int id = Integer.MAX_VALUE - (int) packed[i];
+	    int count = counts.getCount(id);
+	    if (last == NIL || bucketCounts[last] != count) {
+		link(last, NIL, newBucket(count));
+	    }
+	    insert(last, id);
+	    live++;
+	}
+    }
+
+    /**
+     * subtract counts of all words of a count table, the words must be
+     * already in this table. Each word is moved down to the bucket of its new
+     * count, over the buckets of the counts between.
+     * 
+     * @param other
+     *            table to be subtracted.
+     */
+    public void subtractAll(CountTable other) {
+	for (int i = 0; i < other.size(); i++) {
+	    int count = other.getCount(i);
+	    int id = counts.addWord(other, i, -count);
+	    move(id, counts.getCount(id) + count);
+	}
+    }
+
+    /**
+     * remove all words, the arrays are kept for new words.
+     */
+    public void clear() {
+	counts.clear();
+	first = NIL;
+	last = NIL;
+	free = NIL;
+	bucketSize = 0;
+	live = 0;
+    }
+
+    /**
+     * number of distinct words.
+     * 
+     * @return size of the table.
+     */
+    public int size() {
+	return counts.size();
+    }
+
+    /**
+     * occurrences of a word.
+     * 
+     * @param id
+     *            id of the word
+     * @return count of the word.
+     */
+    public int getCount(int id) {
+	return counts.getCount(id);
+    }
+
+    /**
+     * create the string of a word.
+     * 
+     * @param id
+     *            id of the word
+     * @return the word.
+     */
+    public String getWord(int id) {
+	return counts.getWord(id);
+    }
+
+    /**
+     * ids of n words with highest counts, words with same count are ordered
+     * by id, same as <code>CountTable.top(n)</code>.
+     * 
+     * The buckets and the ids in them are already in order, only the first n
+     * ids are visited.
+     * 
+     * @param n
+     *            number of words
+     * @return ids of the words, highest count first.
+     */
+    public int[] top(int n) {
+	int[] ids = new int[Math.min(n, live)];
+	int size = 0;
+	for (int bucket = first; bucket != NIL && size < ids.length; bucket = lower[bucket]) {
+	    size = collect(roots[bucket], ids, size);
+	}
+	return ids;
+    }
+
+    /**
+     * move a word after its count is changed.
+     * 
+     * @param id
+     *            id of the word
+     * @param old
+     *            count of the word before changed, it is not in any bucket
+     *            if the count is 0.
+     */
+    private void move(int id, int old) {
+	int count = counts.getCount(id);
+	if (id == nodeSize) {
+	    // new word has the highest id
+	    if (id == priorities.length) {
+		grow(id * 2);
+	    }
+	    priorities[nodeSize++] = nextPriority();
+	}
+	int bucket = old > 0 ? buckets[id] : NIL;
+	if (count == old) {
+	    return;
+	}
+	if (count == 0) {
+	    leave(bucket, id);
+	    live--;
+	    return;
+	}
+	// buckets of higher and lower counts around the new count
+	int above;
+	int below;
+	int target;
+	if (count > old) {
+	    below = bucket;
+	    above = bucket == NIL ? last : higher[bucket];
+	    while (above != NIL && bucketCounts[above] < count) {
+		below = above;
+		above = higher[above];
+	    }
+	    target = above != NIL && bucketCounts[above] == count ? above : NIL;
+	} else {
+	    above = bucket;
+	    below = lower[bucket];
+	    while (below != NIL && bucketCounts[below] > count) {
+		above = below;
+		below = lower[below];
+	    }
+	    target = below != NIL && bucketCounts[below] == count ? below : NIL;
+	}
+	if (target == NIL) {
+	    if (bucket != NIL && (above == bucket || below == bucket) && roots[bucket] == id
+		    && children[2 * id] == NIL && children[2 * id + 1] == NIL) {
+		// the only word of its count keeps its bucket
+		bucketCounts[bucket] = count;
+		return;
+	    }
+	    target = newBucket(count);
+	    link(above, below, target);
+	}
+	if (bucket == NIL) {
+	    live++;
+	} else {
+	    leave(bucket, id);
+	}
+	insert(target, id);
+    }
+
+    /**
+     * take a id out of its bucket, free the bucket if it is empty.
+     */
+    private void leave(int bucket, int id) {
+	remove(bucket, id);
+	if (roots[bucket] == NIL) {
+	    unlink(bucket);
+	}
+    }
+
+    private int nextPriority() {
+	seed ^= seed << 13;
+	seed ^= seed >>> 17;
+	seed ^= seed << 5;
+	return seed;
+    }
+
+    private void grow(int capacity) {
+	children = Arrays.copyOf(children, capacity * 2);
+	priorities = Arrays.copyOf(priorities, capacity);
+	buckets = Arrays.copyOf(buckets, capacity);
+    }
+
+    /**
+     * take a empty bucket of a count.
+     */
+    private int newBucket(int count) {
+	int bucket = free;
+	if (bucket != NIL) {
+	    free = lower[bucket];
+	} else {
+	    bucket = bucketSize++;
+	    if (bucket == roots.length) {
+		int capacity = bucket * 2;
+		bucketCounts = Arrays.copyOf(bucketCounts, capacity);
+		roots = Arrays.copyOf(roots, capacity);
+		higher = Arrays.copyOf(higher, capacity);
+		lower = Arrays.copyOf(lower, capacity);
+	    }
+	}
+	bucketCounts[bucket] = count;
+	roots[bucket] = NIL;
+	return bucket;
+    }
+
+    /**
+     * link a bucket between two neighbors, either may be NIL.
+     */
+    private void link(int before, int after, int bucket) {
+	higher[bucket] = before;
+	lower[bucket] = after;
+	if (before == NIL) {
+	    first = bucket;
+	} else {
+	    lower[before] = bucket;
+	}
+	if (after == NIL) {
+	    last = bucket;
+	} else {
+	    higher[after] = bucket;
+	}
+    }
+
+    /**
+     * unlink a empty bucket and free it.
+     */
+    private void unlink(int bucket) {
+	int before = higher[bucket];
+	int after = lower[bucket];
+	if (before == NIL) {
+	    first = after;
+	} else {
+	    lower[before] = after;
+	}
+	if (after == NIL) {
+	    last = before;
+	} else {
+	    higher[after] = before;
+	}
+	lower[bucket] = free;
+	free = bucket;
+    }
+
+    /**
+     * put a id into the tree of a bucket. It goes down to the first node
+     * with lower priority, and splits the subtree there into its children.
+     */
+    private void insert(int bucket, int id) {
+	buckets[id] = bucket;
+	int priority = priorities[id];
+	// link is the index of the child pointing to node, -1 for the root
+	int link = -1;
+	int node = roots[bucket];
+	while (node != NIL && priorities[node] > priority) {
+	    link = id < node ? 2 * node : 2 * node + 1;
+	    node = children[link];
+	}
+	setLink(bucket, link, id);
+	int less = 2 * id;
+	int greater = 2 * id + 1;
+	while (node != NIL) {
+	    if (node < id) {
+		children[less] = node;
+		less = 2 * node + 1;
+		node = children[less];
+	    } else {
+		children[greater] = node;
+		greater = 2 * node;
+		node = children[greater];
+	    }
+	}
+	children[less] = NIL;
+	children[greater] = NIL;
+    }
+
+    /**
+     * take a id out of the tree of its bucket, its children are merged in
+     * its place.
+     */
+    private void remove(int bucket, int id) {
+	int link = -1;
+	int node = roots[bucket];
+	while (node != id) {
+	    link = id < node ? 2 * node : 2 * node + 1;
+	    node = children[link];
+	}
+	int less = children[2 * id];
+	int greater = children[2 * id + 1];
+	while (less != NIL && greater != NIL) {
+	    if (priorities[less] > priorities[greater]) {
+		setLink(bucket, link, less);
+		link = 2 * less + 1;
+		less = children[link];
+	    } else {
+		setLink(bucket, link, greater);
+		link = 2 * greater;
+		greater = children[link];
+	    }
+	}
+	setLink(bucket, link, less != NIL ? less : greater);
+    }
+
+    private void setLink(int bucket, int link, int node) {
+	if (link < 0) {
+	    roots[bucket] = node;
+	} else {
+	    children[link] = node;
+	}
+    }
+
+    /**
+     * put the ids of a tree in order until ids are full.
+     * 
+     * @return number of ids filled.
+     */
+    private int collect(int tree, int[] ids, int size) {
+	if (tree == NIL || size == ids.length) {
+	    return size;
+	}
+	size = collect(children[2 * tree], ids, size);
+	if (size < ids.length) {
+	    ids[size++] = tree;
+	    size = collect(children[2 * tree + 1], ids, size);
+	}
+	return size;
+    }
+}
@@ -0,0 +1,371 @@
+package wyan.util;
+
+import java.util.Arrays;
+
+/**
+ * a fixed number of counters to find the most frequent words of a stream, by
+ * the Space-Saving algorithm.
+ * 
+ * A word already monitored increases its counter. A new word takes the
+ * counter with the lowest count, the old count becomes the error of the new
+ * word and the count is increased. So the count of a word is never less than
+ * its real occurrences, and <code>count - error</code> is never more. Any
+ * word occurs more than <code>total / capacity</code> times is monitored.
+ * 
+ * The counters are kept in a min-heap with the position of each counter, so
+ * the counter with the lowest count is found in O(1) and a count is increased
+ * in O(log(capacity)). Words are found by open addressing with linear probing,
+ * a replaced word is removed by shifting the following slots back. The
+ * characters are kept in an arena of twice the longest words of all counters,
+ * it is compacted in place when it is full, so at least half of it is freed
+ * each time. Words longer than <code>MAX_WORD_LENGTH</code> are not counted.
+ * So the memory used only depends on the capacity, no matter how many
+ * distinct words are added.
+ * 
+ * @author wyan
+ *
+ */
+public class SpaceSaving implements SpanTable {
+
+    /**
+     * longest word counted, longer words are not kept.
+     */
+    public static final int MAX_WORD_LENGTH = 32;
+    /**
+     * minimum number of counters.
+     */
+    public static final int MIN_CAPACITY = 16;
+    /**
+     * maximum number of counters, the arena of longest words fits in an array.
+     */
+    public static final int MAX_CAPACITY = 1 << 24;
+    /**
+     * bytes used by a counter: at most 4 slots, offset, length, hash, count,
+     * error, heap and position, a sort key at compaction, and twice the
+     * characters of a longest word.
+     */
+    private static final int COUNTER_BYTES = 4 * 4 + 3 * 4 + 2 * 8 + 2 * 4 + 8 + 2 * 2 * MAX_WORD_LENGTH;
+
+    private final int capacity;
+    /**
+     * id + 1 of the word in each slot, 0 if the slot is empty.
+     */
+    private int[] slots;
+    /**
+     * characters of words, twice the longest words of all counters.
+     */
+    private char[] arena;
+    private int arenaSize;
+
+    private int[] offsets;
+    private int[] lengths;
+    private int[] hashes;
+    private long[] counts;
+    private long[] errors;
+    /**
+     * ids of counters, the counter with lowest count is the root.
+     */
+    private int[] heap;
+    /**
+     * position of each counter in heap.
+     */
+    private int[] positions;
+    private int size;
+    private long total;
+
+    /**
+     * create a summary with fixed number of counters.
+     * 
+     * @param capacity
+     *            number of counters, from <code>MIN_CAPACITY</code> to
+     *            <code>MAX_CAPACITY</code>.
+     */
+    public SpaceSaving(int capacity) {
+	if (capacity < MIN_CAPACITY || capacity > MAX_CAPACITY) {
+	    throw new IllegalArgumentException("capacity out of range:" + capacity);
+	}
+	this.capacity = capacity;
+	this.slots = new int[Integer.highestOneBit(capacity - 1) * 4];
+	this.arena = new char[capacity * 2 * MAX_WORD_LENGTH];
+	this.offsets = new int[capacity];
+	this.lengths = new int[capacity];
+	this.hashes = new int[capacity];
+	this.counts = new long[capacity];
+	this.errors = new long[capacity];
+	this.heap = new int[capacity];
+	this.positions = new int[capacity];
+    }
+
+    /**
+     * number of counters can be kept in memory, no matter how long the words
+     * are.
+     * 
+     * @param memory
+     *            bytes of memory
+     * @return capacity, from <code>MIN_CAPACITY</code> to
+     *         <code>MAX_CAPACITY</code>.
+     */
+    public static int capacityOf(long memory) {
+	return (int) Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, memory / COUNTER_BYTES));
+    }
+
+    @Override
+    public int add(CharSequence text, int start, int end) {
+	if (end - start > MAX_WORD_LENGTH) {
+	    return -1;
+	}
+	int hash = SpanHash.hash(text, start, end);
+	int mask = slots.length - 1;
+	for (int slot = SpanHash.mix(hash) & mask;; slot = (slot + 1) & mask) {
+	    int id = slots[slot] - 1;
+	    if (id < 0) {
+		id = replace(hash, end - start);
+		for (int i = start, j = offsets[id]; i < end; i++, j++) {
+		    arena[j] = text.charAt(i);
+		}
+		return id;
+	    }
+	    if (hashes[id] == hash && SpanHash.equals(arena, offsets[id], lengths[id], text, start, end)) {
+		increase(id);
+		return id;
+	    }
+	}
+    }
+
+    @Override
+    public int add(char[] chars, int start, int end) {
+	if (end - start > MAX_WORD_LENGTH) {
+	    return -1;
+	}
+	int hash = SpanHash.hash(chars, start, end);
+	int mask = slots.length - 1;
+	for (int slot = SpanHash.mix(hash) & mask;; slot = (slot + 1) & mask) {
+	    int id = slots[slot] - 1;
+	    if (id < 0) {
+		id = replace(hash, end - start);
+		System.arraycopy(chars, start, arena, offsets[id], end - start);
+		return id;
+	    }
+	    if (hashes[id] == hash && SpanHash.equals(arena, offsets[id], lengths[id], chars, start, end)) {
+		increase(id);
+		return id;
+	    }
+	}
+    }
+
+    /**
+     * number of counters used.
+     * 
+     * @return number of monitored words.
+     */
+    public int size() {
+	return size;
+    }
+
+    /**
+     * maximum number of counters.
+     * 
+     * @return capacity.
+     */
+    public int getCapacity() {
+	return capacity;
+    }
+
+    /**
+     * number of words counted, longer words are not.
+     * 
+     * @return total occurrences.
+     */
+    public long getTotal() {
+	return total;
+    }
+
+    /**
+     * upper bound of occurrences of a monitored word.
+     * 
+     * @param id
+     *            id of the counter
+     * @return count of the counter.
+     */
+    public long getCount(int id) {
+	return counts[id];
+    }
+
+    /**
+     * maximum over estimation of a monitored word.
+     * 
+     * @param id
+     *            id of the counter
+     * @return error of the counter.
+     */
+    public long getError(int id) {
+	return errors[id];
+    }
+
+    /**
+     * upper bound of occurrences of any word not monitored.
+     * 
+     * @return the lowest count if all counters are used, otherwise 0.
+     */
+    public long getMinCount() {
+	return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    /**
+     * create the string of a monitored word.
+     * 
+     * @param id
+     *            id of the counter
+     * @return the word.
+     */
+    public String getWord(int id) {
+	return new String(arena, offsets[id], lengths[id]);
+    }
+
+    /**
+     * ids of n counters with highest counts, same counts are ordered by error.
+     * 
+     * @param n
+     *            number of words
+     * @return ids of the counters, highest count first.
+     */
+    public int[] top(int n) {
+	Integer[] ids = new Integer[size];
+	for (int id = 0; id < size; id++) {
+	    ids[id] = id;
+	}
+	Arrays.sort(ids, (a, b) -> counts[a] != counts[b] ? Long.compare(counts[b], counts[a])
+		: Long.compare(errors[a], errors[b]));
+	int[] result = new int[Math.min(n, size)];
+	for (int i = 0; i < result.length; i++) {
+	    result[i] = ids[i];
+	}
+	return result;
+    }
+
+    private void increase(int id) {
+	total++;
+	counts[id]++;
+	siftDown(positions[id]);
+    }
+
+    /**
+     * allocate a counter and the room of characters for a new word. If all
+     * counters are used, the counter with lowest count is taken over.
+     */
+    private int replace(int hash, int length) {
+	total++;
+	int id;
+	if (size < capacity) {
+	    id = size++;
+	    counts[id] = 1;
+	    errors[id] = 0;
+	    heap[id] = id;
+	    positions[id] = id;
+	    siftUp(id);
+	} else {
+	    id = heap[0];
+	    remove(id);
+	    errors[id] = counts[id];
+	    counts[id]++;
+	    lengths[id] = 0;
+	    siftDown(0);
+	}
+	if (arenaSize + length > arena.length) {
+	    compact();
+	}
+	offsets[id] = arenaSize;
+	lengths[id] = length;
+	hashes[id] = hash;
+	arenaSize += length;
+	int mask = slots.length - 1;
+	int slot = SpanHash.mix(hash) & mask;
+	while (slots[slot] != 0) {
+	    slot = (slot + 1) & mask;
+	}
+	slots[slot] = id + 1;
+	return id;
+    }
+
+    /**
+     * remove the word of a counter from slots, the following slots are
+     * shifted back unless they are before their home slot.
+     */
+    private void remove(int id) {
+	int mask = slots.length - 1;
+	int hole = SpanHash.mix(hashes[id]) & mask;
+	while (slots[hole] != id + 1) {
+	    hole = (hole + 1) & mask;
+	}
+	slots[hole] = 0;
+	for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+	    int home = SpanHash.mix(hashes[slots[slot] - 1]) & mask;
+	    // the word can move to hole if home is not in (hole, slot]
+	    if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+		slots[hole] = slots[slot];
+		slots[slot] = 0;
+		hole = slot;
+	    }
+	}
+    }
+
+    /**
+     * move words of all counters to the front of the arena in the order of
+     * their offsets, so a word never overwrites a word not moved yet. It is
+     * only called when the arena is full, the live words take at most half
+     * of it, so the moves are paid by the characters added since last time.
+     */
+    private void compact() {
+	long[] order = new long[size];
+	for (int id = 0; id < size; id++) {
+	    order[id] = (long) offsets[id] << 32 | id;
+	}
+	Arrays.sort(order);
+	int offset = 0;
+	for (long key : order) {
+	    int id = (int) key;
+	    System.arraycopy(arena, offsets[id], arena, offset, lengths[id]);
+	    offsets[id] = offset;
+	    offset += lengths[id];
+	}
+	arenaSize = offset;
+    }
+
+    private void siftUp(int position) {
+	int id = heap[position];
+	while (position > 0) {
+	    int parent = (position - 1) >>> 1;
+	    int p = heap[parent];
+	    if (counts[p] <= counts[id]) {
+		break;
+	    }
+	    heap[position] = p;
+	    positions[p] = position;
+	    position = parent;
+	}
+	heap[position] = id;
+	positions[id] = position;
+    }
+
+    private void siftDown(int position) {
+	int id = heap[position];
+	int half = size >>> 1;
+	while (position < half) {
+	    int child = 2 * position + 1;
+	    int c = heap[child];
+	    int right = child + 1;
+	    if (right < size && counts[heap[right]] < counts[c]) {
+		child = right;
+		c = heap[child];
+	    }
+	    if (counts[id] <= counts[c]) {
+		break;
+	    }
+	    heap[position] = c;
+	    positions[c] = position;
+	    position = child;
+	}
+	heap[position] = id;
+	positions[id] = position;
+    }
+}
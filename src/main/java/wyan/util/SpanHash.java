@@ -0,0 +1,125 @@
+package wyan.util;
+
+/**
+ * hash and compare a span of chars with a word kept in a char arena, shared by
+ * the tables count words without creating strings.
+ * 
+ * The hash code is same as <code>String.hashCode</code> of the span.
+ * 
+ * @author wyan
+ *
+ */
+final class SpanHash {
+
+    private SpanHash() {
+    }
+
+    /**
+     * hash code of a span of text.
+     * 
+     * @param text
+     *            the text
+     * @param start
+     *            start index of the span
+     * @param end
+     *            end index of the span, exclusive
+     * @return hash code same as the string of the span.
+     */
+    static int hash(CharSequence text, int start, int end) {
+	int h = 0;
+	for (int i = start; i < end; i++) {
+	    h = 31 * h + text.charAt(i);
+	}
+	return h;
+    }
+
+    /**
+     * hash code of a span of chars.
+     * 
+     * @param chars
+     *            the chars
+     * @param start
+     *            start index of the span
+     * @param end
+     *            end index of the span, exclusive
+     * @return hash code same as the string of the span.
+     */
+    static int hash(char[] chars, int start, int end) {
+	int h = 0;
+	for (int i = start; i < end; i++) {
+	    h = 31 * h + chars[i];
+	}
+	return h;
+    }
+
+    /**
+     * spread the bits of hash code, so the low bits can be used as slot or
+     * index.
+     * 
+     * @param hash
+     *            hash code of a span
+     * @return mixed hash code.
+     */
+    static int mix(int hash) {
+	int h = hash * 0x9E3779B9;
+	return h ^ (h >>> 16);
+    }
+
+    /**
+     * test if a word in the arena has same chars as a span of text.
+     * 
+     * @param arena
+     *            chars of words
+     * @param offset
+     *            offset of the word in arena
+     * @param length
+     *            length of the word
+     * @param text
+     *            the text
+     * @param start
+     *            start index of the span
+     * @param end
+     *            end index of the span, exclusive
+     * @return true if the word equals the span.
+     */
+    static boolean equals(char[] arena, int offset, int length, CharSequence text, int start, int end) {
+	if (length != end - start) {
+	    return false;
+	}
+	for (int i = start, j = offset; i < end; i++, j++) {
+	    if (arena[j] != text.charAt(i)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * test if a word in the arena has same chars as a span of chars.
+     * 
+     * @param arena
+     *            chars of words
+     * @param offset
+     *            offset of the word in arena
+     * @param length
+     *            length of the word
+     * @param chars
+     *            the chars
+     * @param start
+     *            start index of the span
+     * @param end
+     *            end index of the span, exclusive
+     * @return true if the word equals the span.
+     */
+    static boolean equals(char[] arena, int offset, int length, char[] chars, int start, int end) {
+	if (length != end - start) {
+	    return false;
+	}
+	for (int i = start, j = offset; i < end; i++, j++) {
+	    if (arena[j] != chars[i]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+}
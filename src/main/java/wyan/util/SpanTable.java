@@ -0,0 +1,36 @@
+package wyan.util;
+
+/**
+ * a table counts words given as character spans.
+ * 
+ * @author wyan
+ *
+ */
+public interface SpanTable {
+
+    /**
+     * add one occurrence of a word.
+     * 
+     * @param text
+     *            text contains the word
+     * @param start
+     *            start index of the word
+     * @param end
+     *            end index of the word, exclusive
+     * @return id of the word in the table, -1 if the word is not kept.
+     */
+    public int add(CharSequence text, int start, int end);
+
+    /**
+     * add one occurrence of a word.
+     * 
+     * @param chars
+     *            characters contains the word
+     * @param start
+     *            start index of the word
+     * @param end
+     *            end index of the word, exclusive
+     * @return id of the word in the table, -1 if the word is not kept.
+     */
+    public int add(char[] chars, int start, int end);
+}
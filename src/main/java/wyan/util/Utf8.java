@@ -0,0 +1,159 @@
+package wyan.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * decode UTF-8 bytes without a <code>CharsetDecoder</code>.
+ * 
+ * The code point and its size are packed in one int, so decoding does not
+ * create any object:
+ * 
+ * <pre>
+ * packed = size &lt;&lt; SIZE_SHIFT | codePoint
+ * </pre>
+ * 
+ * A malformed sequence, including overlong forms, surrogates and sequences cut
+ * by the limit, is decoded as one <code>REPLACEMENT</code> character, the same
+ * as <code>CharsetDecoder</code> replaces it.
+ * 
+ * @author wyan
+ *
+ */
+public class Utf8 {
+
+    /**
+     * code point of malformed input.
+     */
+    public static final int REPLACEMENT = 0xFFFD;
+    /**
+     * maximum number of bytes of a code point.
+     */
+    public static final int MAX_SIZE = 4;
+
+    private static final int SIZE_SHIFT = 24;
+    private static final int CODE_POINT_MASK = (1 << SIZE_SHIFT) - 1;
+
+    private Utf8() {
+    }
+
+    /**
+     * decode the code point at index.
+     * 
+     * A malformed sequence is replaced by one <code>REPLACEMENT</code>, its
+     * size is the longest prefix of a valid sequence, at least 1 byte. It is
+     * same as the replacement of <code>CharsetDecoder</code>, so the bytes
+     * are decoded to same text as a <code>Reader</code>.
+     * 
+     * @param bytes
+     *            UTF-8 bytes, read by absolute index.
+     * @param index
+     *            index of the first byte.
+     * @param limit
+     *            index after the last byte can be read.
+     * @return code point and its size packed.
+     */
+    public static int next(ByteBuffer bytes, int index, int limit) {
+	int b0 = bytes.get(index);
+	if (b0 >= 0) {
+	    return 1 << SIZE_SHIFT | b0;
+	}
+	b0 &= 0xFF;
+	int size;
+	// range of the second byte, it excludes overlong forms and code
+	// points above U+10FFFF.
+	int low = 0x80;
+	int high = 0xBF;
+	if (b0 >= 0xC2 && b0 < 0xE0) {
+	    size = 2;
+	} else if (b0 >= 0xE0 && b0 < 0xF0) {
+	    size = 3;
+	    if (b0 == 0xE0) {
+		low = 0xA0;
+	    }
+	} else if (b0 >= 0xF0 && b0 < 0xF5) {
+	    size = 4;
+	    if (b0 == 0xF0) {
+		low = 0x90;
+	    } else if (b0 == 0xF4) {
+		high = 0x8F;
+	    }
+	} else {
+	    return 1 << SIZE_SHIFT | REPLACEMENT;
+	}
+	int cp = b0 & (0x7F >> size);
+	for (int i = 1; i < size; i++) {
+	    if (index + i >= limit) {
+		return i << SIZE_SHIFT | REPLACEMENT;
+	    }
+	    int b = bytes.get(index + i) & 0xFF;
+	    if (b < low || b > high) {
+		return i << SIZE_SHIFT | REPLACEMENT;
+	    }
+	    low = 0x80;
+	    high = 0xBF;
+	    cp = cp << 6 | (b & 0x3F);
+	}
+	if (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+	    // the decoder replaces a whole surrogate
+	    return size << SIZE_SHIFT | REPLACEMENT;
+	}
+	return size << SIZE_SHIFT | cp;
+    }
+
+    /**
+     * code point of a decoded result.
+     * 
+     * @param packed
+     *            result of <code>next</code>
+     * @return code point.
+     */
+    public static int codePoint(int packed) {
+	return packed & CODE_POINT_MASK;
+    }
+
+    /**
+     * number of bytes of a decoded result.
+     * 
+     * @param packed
+     *            result of <code>next</code>
+     * @return number of bytes.
+     */
+    public static int size(int packed) {
+	return packed >>> SIZE_SHIFT;
+    }
+
+    /**
+     * decode a range of bytes into chars.
+     * 
+     * UTF-8 never uses less bytes than UTF-16 chars, so
+     * <code>end - start</code> chars are always enough.
+     * 
+     * @param bytes
+     *            UTF-8 bytes, read by absolute index.
+     * @param start
+     *            index of first byte
+     * @param end
+     *            index after last byte
+     * @param chars
+     *            output chars
+     * @param offset
+     *            index of first output char
+     * @return number of chars decoded.
+     */
+    public static int decode(ByteBuffer bytes, int start, int end, char[] chars, int offset) {
+	int n = offset;
+	int i = start;
+	while (i < end) {
+	    int b = bytes.get(i);
+	    if (b >= 0) {
+		chars[n++] = (char) b;
+		i++;
+		continue;
+	    }
+	    int packed = next(bytes, i, end);
+	    n += Character.toChars(codePoint(packed), chars, n);
+	    i += size(packed);
+	}
+	return n - offset;
+    }
+}
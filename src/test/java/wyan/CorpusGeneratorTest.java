@@ -0,0 +1,74 @@
+package wyan;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import wyan.CorpusGenerator.Script;
+
+public class CorpusGeneratorTest {
+
+    @Test
+    public void testReproducible() {
+	String text = new CorpusGenerator(1).generate(1000);
+	Assert.assertEquals(new CorpusGenerator(1).generate(1000), text);
+	Assert.assertNotEquals(new CorpusGenerator(2).generate(1000), text);
+	CorpusGenerator generator = new CorpusGenerator(1);
+	generator.generate(10);
+	// each text starts from the seed
+	Assert.assertEquals(generator.generate(1000), text);
+	Assert.assertTrue(generator.generateChars(5000).length() >= 5000);
+    }
+
+    /**
+     * words follow Zipf distribution, the most frequent word is far more
+     * frequent than the uniform distribution.
+     */
+    @Test
+    public void testZipf() {
+	CorpusGenerator generator = new CorpusGenerator(0).vocabulary(10000).weight(Script.CJK, 0)
+		.weight(Script.KATAKANA, 0).weight(Script.HEBREW, 0).weight(Script.ARABIC, 0)
+		.weight(Script.NUMERIC, 0);
+	String text = generator.generate(100000);
+	WordCounter counter = new WordCounter();
+	String top = counter.count(text, 1)[0];
+	int occurrences = text.split("\\b" + top + "\\b", -1).length - 1;
+	Assert.assertTrue(occurrences > 5000, top + ":" + occurrences);
+	Assert.assertTrue(counter.count(text, 20000).length <= 10000 * 2);
+    }
+
+    @Test
+    public void testScripts() {
+	String text = new CorpusGenerator(0).lineBreak("\r\n").generate(20000);
+	Assert.assertTrue(text.contains("\r\n"));
+	Assert.assertFalse(text.replace("\r\n", "").contains("\n"));
+	Assert.assertTrue(text.chars().anyMatch(c -> c >= 0x4E00 && c <= 0x9FFF), "CJK");
+	Assert.assertTrue(text.chars().anyMatch(c -> c >= 0x30A1 && c <= 0x30FA), "KATAKANA");
+	Assert.assertTrue(text.chars().anyMatch(c -> c >= 0x05D0 && c <= 0x05EA), "HEBREW");
+	Assert.assertTrue(text.chars().anyMatch(c -> c >= 0x0627 && c <= 0x064A), "ARABIC");
+	Assert.assertTrue(text.matches("(?s).*\\d,\\d{3}.*"), "NUMERIC");
+	Assert.assertTrue(text.matches("(?s).*[\\u05D0-\\u05EA]\"[\\u05D0-\\u05EA].*"), "HEBREW QUOTE");
+	Assert.assertTrue(text.matches("(?s).*[a-z]'[a-z].*"), "LATIN QUOTE");
+	String latin = new CorpusGenerator(0).weight(Script.CJK, 0).weight(Script.KATAKANA, 0)
+		.weight(Script.HEBREW, 0).weight(Script.ARABIC, 0).weight(Script.NUMERIC, 0).generate(1000);
+	Assert.assertTrue(latin.chars().allMatch(c -> c < 0x80), latin);
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+	Path file = Files.createTempFile("corpus", ".txt");
+	try {
+	    new CorpusGenerator(0).write(file, 100000);
+	    long size = Files.size(file);
+	    Assert.assertTrue(size >= 100000 && size < 200000, "size:" + size);
+	    String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	    Assert.assertEquals(new WordCounter().countFile(file, 5), new WordCounter().count(text, 5));
+	} finally {
+	    Files.delete(file);
+	}
+    }
+}
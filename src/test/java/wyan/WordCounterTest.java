@@ -1,8 +1,36 @@
 package wyan;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import wyan.unicode.WordBreaker;
+import wyan.util.CountTable;
+
 public class WordCounterTest {
 
     @Test
@@ -12,4 +40,496 @@ public class WordCounterTest {
 	Assert.assertEquals(new String[] {}, t.count("", 3));
 	Assert.assertEquals(new String[] { "ABC", "123", "A" }, t.count("123 123 123 ABC ABC ABC ABC A A 2 2", 3));
     }
+
+    @Test
+    public void testWordCountReader() throws IOException {
+	WordCounter t = new WordCounter();
+	Assert.assertEquals(new String[] {}, t.countStream(new StringReader(""), 3));
+	Assert.assertEquals(new String[] { "ABC", "123", "A" },
+		t.countStream(new StringReader("123 123 123 ABC ABC ABC ABC A A 2 2"), 3));
+    }
+
+    @Test
+    public void testWordCountFile() throws IOException {
+	Path file = Files.createTempFile("wordcount", ".txt");
+	try {
+	    Files.write(file, "123 123 123 ABC ABC ABC ABC A A 2 2".getBytes(StandardCharsets.UTF_8));
+	    Assert.assertEquals(new String[] { "ABC", "123", "A" }, new WordCounter().countFile(file, 3));
+	} finally {
+	    Files.delete(file);
+	}
+    }
+
+    /**
+     * malformed UTF-8 is replaced same by the byte path and the reader path.
+     */
+    @Test
+    public void testMalformedFile() throws IOException {
+	//@formatter:off
+	byte[] bytes = {
+	    'a', (byte) 0xe4, (byte) 0xb8, ' ', 'b',            // truncated
+	    ' ', (byte) 0xc0, (byte) 0xaf, ' ',                 // overlong
+	    (byte) 0xe0, (byte) 0x80, (byte) 0xaf, ' ', 'a',    // overlong
+	    ' ', (byte) 0xed, (byte) 0xa0, (byte) 0x80, ' ',    // surrogate
+	    (byte) 0xf0, (byte) 0x9f, (byte) 0x98, 'b', ' ',    // truncated
+	    'a', ' ', (byte) 0xe4, (byte) 0xb8 };               // cut by end
+	//@formatter:on
+	// 10 ideographs, more than the 9 replacements but less than the bytes
+	byte[] cjk = "\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d".getBytes(StandardCharsets.UTF_8);
+	bytes = ByteBuffer.allocate(cjk.length + bytes.length).put(cjk).put(bytes).array();
+	Path file = Files.createTempFile("wordcount", ".txt");
+	try {
+	    Files.write(file, bytes);
+	    // keep every word, U+FFFD is removed by the default normalizer
+	    WordCounter t = new WordCounter(WordBreaker.getDefaultInstance(), null);
+	    String[] expected = t.countStream(new InputStreamReader(new ByteArrayInputStream(bytes),
+		    StandardCharsets.UTF_8), 10);
+	    Assert.assertEquals(t.countFile(file, 10), expected);
+	    Assert.assertEquals(expected[0], "\u4e2d");
+	    Assert.assertEquals(expected[1], "\ufffd");
+	} finally {
+	    Files.delete(file);
+	}
+    }
+
+    /**
+     * a recording gets one event for a file, with the time of each stage.
+     */
+    @Test
+    public void testStageEvents() throws IOException {
+	Path file = Files.createTempFile("wordcount", ".txt");
+	Path dump = Files.createTempFile("wordcount", ".jfr");
+	try (Recording recording = new Recording()) {
+	    Files.write(file, "123 123 123 ABC ABC ABC ABC A A 2 2".getBytes(StandardCharsets.UTF_8));
+	    recording.enable("wyan.Document");
+	    recording.start();
+	    Assert.assertEquals(new String[] { "ABC", "123", "A" }, new WordCounter().countFile(file, 3));
+	    recording.stop();
+	    recording.dump(dump);
+	    List<String> documents = new ArrayList<>();
+	    for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+		if (event.getEventType().getName().equals("wyan.Document")) {
+		    documents.add(event.getString("document"));
+		    Assert.assertEquals(event.getLong("bytes"), Files.size(file));
+		    // whitespace is a word before normalized
+		    Assert.assertEquals(event.getLong("tokens"), 21);
+		    Assert.assertEquals(event.getLong("words"), 4);
+		    for (String stage : new String[] { "read", "segment", "normalize", "count", "select" }) {
+			Assert.assertTrue(event.getLong(stage + "Time") >= 0);
+		    }
+		}
+	    }
+	    Assert.assertEquals(documents, Arrays.asList(file.toString()));
+	} finally {
+	    Files.delete(file);
+	    Files.delete(dump);
+	}
+    }
+
+    /**
+     * each file of a batch gets its own distinct words, not those of the
+     * worker.
+     */
+    @Test
+    public void testDocumentEventsOfBatch() throws IOException {
+	Path first = Files.createTempFile("wordcount", ".txt");
+	Path second = Files.createTempFile("wordcount", ".txt");
+	Path dump = Files.createTempFile("wordcount", ".jfr");
+	try (Recording recording = new Recording()) {
+	    Files.write(first, "a b c d".getBytes(StandardCharsets.UTF_8));
+	    Files.write(second, "a a".getBytes(StandardCharsets.UTF_8));
+	    recording.enable("wyan.Document");
+	    recording.start();
+	    WordCounter.BatchResult result = new WordCounter().countFiles(Arrays.asList(first, second), 1, 1);
+	    recording.stop();
+	    recording.dump(dump);
+	    Assert.assertEquals(result.getWords(), new String[] { "a" });
+	    List<Long> words = new ArrayList<>();
+	    for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+		if (event.getEventType().getName().equals("wyan.Document")) {
+		    words.add(event.getLong("words"));
+		    Assert.assertEquals(event.getLong("selectTime"), 0);
+		}
+	    }
+	    Assert.assertEquals(words, Arrays.asList(4L, 1L));
+	} finally {
+	    Files.delete(first);
+	    Files.delete(second);
+	    Files.delete(dump);
+	}
+    }
+
+    /**
+     * two pass count should return same words as one pass count, even if the
+     * sketch is much smaller than the vocabulary.
+     */
+    @Test
+    public void testCountTwoPass() throws IOException {
+	WordCounter t = new WordCounter();
+	Random random = new Random(0);
+	StringBuilder sb = new StringBuilder();
+	for (int i = 0; i < 20000; i++) {
+	    // skewed words, low ids are frequent
+	    sb.append("w").append((int) Math.pow(random.nextInt(1 << 12), 2) >> 12).append(i % 20 == 0 ? "\n" : " ");
+	}
+	Path file = Files.createTempFile("wordcount", ".txt");
+	try {
+	    Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+	    int vocabulary = t.countFile(file, Integer.MAX_VALUE).length;
+	    for (int n : new int[] { 1, 10, 50, 5000 }) {
+		String[] expected = t.countFile(file, n);
+		Assert.assertEquals(t.countTwoPass(file, n, 1 << 24), expected, "n=" + n);
+		Assert.assertEquals(t.countTwoPass(file.toUri().toURL(), n, 1 << 24), expected, "n=" + n);
+	    }
+	    // the candidates do not fit all words, so the second pass only
+	    // counts a part of the vocabulary
+	    long memory = 1 << 19;
+	    Assert.assertTrue(CountTable.capacityOf(memory / 4) < vocabulary);
+	    for (int n : new int[] { 1, 10, 50 }) {
+		String[] expected = t.countFile(file, n);
+		Assert.assertEquals(t.countTwoPass(file, n, memory), expected, "n=" + n);
+		Assert.assertEquals(t.countTwoPass(file.toUri().toURL(), n, memory), expected, "n=" + n);
+	    }
+	    // less counters than n, every word is a candidate
+	    try {
+		t.countTwoPass(file, 5000, memory);
+		Assert.fail();
+	    } catch (IllegalStateException ex) {
+		// expected
+	    }
+	    Files.write(file, new byte[0]);
+	    Assert.assertEquals(t.countTwoPass(file, 3, 0), new String[] {});
+	} finally {
+	    Files.delete(file);
+	}
+    }
+
+    /**
+     * files counted by many workers should have same counts as one file.
+     */
+    @Test
+    public void testCountFiles() throws IOException {
+	WordCounter t = new WordCounter();
+	Path dir = Files.createTempDirectory("wordcount");
+	try {
+	    Path sub = Files.createDirectories(dir.resolve("sub"));
+	    StringBuilder all = new StringBuilder();
+	    for (int i = 0; i < 20; i++) {
+		// the counts are distinct, so the order does not depend on
+		// workers
+		String text = "a a a b b c" + (i % 2 == 0 ? " a" : " b") + "\n";
+		Files.write((i < 10 ? dir : sub).resolve(i + ".txt"), text.getBytes(StandardCharsets.UTF_8));
+		all.append(text);
+	    }
+	    Files.write(sub.resolve("skip.md"), "c c c c c c c c c c c c c c c c c c c c c".getBytes(StandardCharsets.UTF_8));
+	    List<Path> files = WordCounter.findFiles(dir.toString());
+	    Assert.assertEquals(files.size(), 21);
+	    Assert.assertEquals(WordCounter.findFiles(dir + "/**.txt").size(), 20);
+	    Assert.assertEquals(WordCounter.findFiles(dir + "/sub/*.txt").size(), 10);
+	    Assert.assertEquals(WordCounter.findFiles(sub.resolve("skip.md").toString()).size(), 1);
+	    files = WordCounter.findFiles(dir + "/**.txt");
+	    String[] expected = t.count(all.toString(), 3);
+	    for (int threads : new int[] { 1, 3 }) {
+		WordCounter.BatchResult result = t.countFiles(files, 3, threads);
+		Assert.assertEquals(result.getWords(), expected);
+		Assert.assertEquals(result.getFiles(), 20);
+		Assert.assertEquals(result.getBytes(), all.length());
+		Assert.assertTrue(result.getMegabytesPerSecond() > 0);
+	    }
+	} finally {
+	    try (Stream<Path> paths = Files.walk(dir)) {
+		paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+	    }
+	}
+    }
+
+    /**
+     * parallel count should return same words as sequential count.
+     */
+    @Test
+    public void testCountParallel() {
+	WordCounter t = new WordCounter();
+	String[] samples = { "a", "b", "c", "ab", "a.b", "1", "1.2", " ", "\r\n", "\n", "\n\n", "\u0300", "\u00AD" };
+	Random random = new Random(0);
+	for (int round = 0; round < 50; round++) {
+	    String text = randomMessage(random, samples, 2000);
+	    for (int n : new int[] { 1, 3, 100 }) {
+		Assert.assertEquals(t.countParallel(text, n, 16), t.count(text, n), text);
+	    }
+	}
+	Assert.assertEquals(t.countParallel("", 3), new String[] {});
+    }
+
+    /**
+     * top words of a accumulator should be same as counting all texts at
+     * once, texts are joined by LF so words never cross texts.
+     */
+    @Test
+    public void testAccumulator() {
+	WordCounter t = new WordCounter();
+	Accumulator all = t.accumulator();
+	Accumulator odd = t.accumulator();
+	String[] samples = { "a", "b", "c", "ab", "a.b", "1", " ", "\u0300" };
+	Random random = new Random(0);
+	StringBuilder sb = new StringBuilder();
+	StringBuilder oddText = new StringBuilder();
+	for (int round = 0; round < 200; round++) {
+	    String message = randomMessage(random, samples, 50);
+	    all.add(message);
+	    if (round % 2 == 1) {
+		odd.add(message);
+		oddText.append(message).append('\n');
+	    }
+	    sb.append(message).append('\n');
+	    for (int n : new int[] { 1, 3, 100 }) {
+		Assert.assertEquals(all.topN(n), t.count(sb.toString(), n));
+	    }
+	}
+	all.add(null);
+	Accumulator merged = t.accumulator();
+	merged.merge(all);
+	merged.merge(odd);
+	Assert.assertEquals(merged.size(), all.size());
+	Assert.assertEquals(merged.topN(5), t.count(sb.toString() + oddText, 5));
+    }
+
+    /**
+     * leaderboard should always show same words as counting all texts.
+     */
+    @Test
+    public void testLeaderboard() {
+	WordCounter t = new WordCounter();
+	Leaderboard board = t.leaderboard(3);
+	String[] samples = { "a", "b", "c", "ab", "a.b", "1", " ", "\u0300" };
+	Random random = new Random(0);
+	StringBuilder sb = new StringBuilder();
+	for (int round = 0; round < 200; round++) {
+	    String message = randomMessage(random, samples, 50);
+	    board.add(message);
+	    sb.append(message).append('\n');
+	    String[] expected = t.count(sb.toString(), 3);
+	    Assert.assertEquals(board.top(), expected);
+	    Assert.assertTrue(board.contains(expected[0]));
+	}
+	Assert.assertFalse(board.contains("not exist"));
+    }
+
+    /**
+     * old texts expire when the clock moves, a window should count same as
+     * the texts of its buckets.
+     */
+    @Test
+    public void testWindow() {
+	WordCounter t = new WordCounter();
+	long[] time = { 0 };
+	Window window = t.window(100, 4, () -> time[0]);
+	window.add("a a b");
+	time[0] = 30;
+	window.add("b c");
+	Assert.assertEquals(window.topN(2), new String[] { "a", "b" });
+	time[0] = 99;
+	Assert.assertEquals(window.topN(5), new String[] { "a", "b", "c" });
+	// first bucket [0, 25) expired
+	time[0] = 100;
+	Assert.assertEquals(window.topN(5), new String[] { "b", "c" });
+	time[0] = 1000;
+	Assert.assertEquals(window.topN(5), new String[] {});
+	window.add(null);
+
+	// each message is in its own bucket, only last 4 messages are counted
+	String[] samples = { "a", "b", "c", "ab", "1", " " };
+	Random random = new Random(0);
+	List<String> messages = new ArrayList<>();
+	for (int round = 0; round < 3000; round++) {
+	    String message = randomMessage(random, samples, 20);
+	    time[0] += 25;
+	    window.add(message);
+	    messages.add(message);
+	    if (round % 10 == 0) {
+		String text = String.join("\n", messages.subList(Math.max(0, messages.size() - 4), messages.size()));
+		CountTable expected = new CountTable();
+		t.counter(expected).accept(text);
+		// same counts may be in different order, compare the count
+		// of each word and the order of counts
+		String[] words = window.topN(100);
+		Assert.assertEquals(words.length, expected.size(), text);
+		Assert.assertEquals(new HashSet<>(Arrays.asList(words)).size(), words.length, text);
+		long last = Long.MAX_VALUE;
+		for (String word : words) {
+		    int id = expected.find(word, 0, word.length());
+		    Assert.assertTrue(id >= 0, word);
+		    long count = expected.getCount(id);
+		    Assert.assertTrue(count <= last, word);
+		    last = count;
+		}
+		if (words.length > 3) {
+		    // a smaller n is a prefix of the same ranking
+		    Assert.assertEquals(window.topN(3), Arrays.copyOf(words, 3));
+		}
+	    }
+	}
+    }
+
+    /**
+     * threads share a counter, every word should be counted once after all
+     * threads flush.
+     */
+    @Test
+    public void testConcurrentCounter() throws Exception {
+	WordCounter t = new WordCounter();
+	ConcurrentCounter counter = t.concurrentCounter();
+	int threads = 4;
+	int rounds = ConcurrentCounter.FLUSH_SIZE;
+	ExecutorService executor = Executors.newFixedThreadPool(threads);
+	try {
+	    List<Future<?>> futures = new ArrayList<>();
+	    for (int i = 0; i < threads; i++) {
+		String message = "the word" + i + " the";
+		futures.add(executor.submit(() -> {
+		    for (int r = 0; r < rounds; r++) {
+			counter.add(message);
+		    }
+		    counter.flush();
+		}));
+	    }
+	    for (Future<?> f : futures) {
+		f.get();
+	    }
+	} finally {
+	    executor.shutdown();
+	}
+	Assert.assertEquals(counter.getCount("the"), 2L * threads * rounds);
+	Assert.assertEquals(counter.getCount("word1"), rounds);
+	Assert.assertEquals(counter.getCount("not exist"), 0);
+	// words of different threads with same count are ordered by flush
+	String[] top = counter.topN(5);
+	Assert.assertEquals(top[0], "the");
+	Assert.assertEquals(new HashSet<>(Arrays.asList(top).subList(1, 5)),
+		new HashSet<>(Arrays.asList("word0", "word1", "word2", "word3")));
+    }
+
+    /**
+     * words with same count are ordered by first occurrence, same as other
+     * counters.
+     */
+    @Test
+    public void testConcurrentCounterTies() {
+	WordCounter t = new WordCounter();
+	ConcurrentCounter counter = t.concurrentCounter();
+	String text = "b c a c b a d";
+	counter.add(text);
+	counter.flush();
+	Assert.assertEquals(counter.topN(4), t.count(text, 4));
+	Assert.assertEquals(counter.topN(4), new String[] { "b", "c", "a", "d" });
+    }
+
+    /**
+     * threads add same words at same time while others read top words, the
+     * counts are exact after all threads flush.
+     */
+    @Test
+    public void testConcurrentCounterContention() throws Exception {
+	WordCounter t = new WordCounter();
+	ConcurrentCounter counter = t.concurrentCounter();
+	String[] samples = { "a", "b", "c", "d", "e" };
+	int threads = 8;
+	int rounds = 20000;
+	long[][] expected = new long[threads][samples.length];
+	CountDownLatch start = new CountDownLatch(1);
+	AtomicBoolean done = new AtomicBoolean();
+	ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+	try {
+	    List<Future<?>> futures = new ArrayList<>();
+	    for (int i = 0; i < threads; i++) {
+		long[] counts = expected[i];
+		Random random = new Random(i);
+		futures.add(executor.submit(() -> {
+		    start.await();
+		    for (int r = 0; r < rounds; r++) {
+			int w = random.nextInt(samples.length);
+			counts[w]++;
+			counter.add(samples[w]);
+			// flush often, so threads update same adders
+			if (random.nextInt(64) == 0) {
+			    counter.flush();
+			}
+		    }
+		    counter.flush();
+		    return null;
+		}));
+	    }
+	    Future<?> reader = executor.submit(() -> {
+		start.await();
+		while (!done.get()) {
+		    Assert.assertTrue(counter.topN(3).length <= 3);
+		}
+		return null;
+	    });
+	    start.countDown();
+	    for (Future<?> f : futures) {
+		f.get();
+	    }
+	    done.set(true);
+	    reader.get();
+	} finally {
+	    executor.shutdown();
+	}
+	long total = 0;
+	for (int w = 0; w < samples.length; w++) {
+	    long count = 0;
+	    for (long[] counts : expected) {
+		count += counts[w];
+	    }
+	    Assert.assertEquals(counter.getCount(samples[w]), count, samples[w]);
+	    total += count;
+	}
+	Assert.assertEquals(total, (long) threads * rounds);
+	Assert.assertEquals(counter.topN(samples.length).length, samples.length);
+    }
+
+    /**
+     * with enough counters the estimates are exact, with few counters the
+     * frequent words are still found.
+     */
+    @Test
+    public void testCountApproximate() throws IOException {
+	WordCounter t = new WordCounter();
+	String text = "the cat and the dog and the bird";
+	WordCounter.Estimate[] words = t.countApproximate(text, 2, 1 << 16);
+	Assert.assertEquals(words.length, 2);
+	Assert.assertEquals(words[0].getWord(), "the");
+	Assert.assertEquals(words[0].getCount(), 3);
+	Assert.assertEquals(words[0].getError(), 0);
+	Assert.assertTrue(words[0].isGuaranteed());
+	Assert.assertEquals(words[1].getWord(), "and");
+
+	StringBuilder sb = new StringBuilder();
+	for (int i = 0; i < 5000; i++) {
+	    sb.append(i % 2 == 0 ? "hot " : "cold" + i + " ");
+	}
+	words = t.countApproximate(new StringReader(sb.toString()), 1, 0);
+	Assert.assertEquals(words[0].getWord(), "hot");
+	Assert.assertTrue(words[0].getMinCount() <= 2500 && words[0].getCount() >= 2500);
+	Assert.assertTrue(words[0].isGuaranteed());
+    }
+
+    /**
+     * normalizer only implements normalize(String) should still work.
+     */
+    @Test
+    public void testStringNormalizer() {
+	WordCounter t = new WordCounter(WordBreaker.getDefaultInstance(), w -> w.trim().isEmpty() ? null : w.toLowerCase());
+	Assert.assertEquals(new String[] { "a", "abc" }, t.count("ABC abc A a A", 2));
+    }
+
+    /**
+     * join 1 to bound random samples into a message.
+     */
+    private static String randomMessage(Random random, String[] samples, int bound) {
+	StringBuilder sb = new StringBuilder();
+	for (int i = random.nextInt(bound); i >= 0; i--) {
+	    sb.append(samples[random.nextInt(samples.length)]);
+	}
+	return sb.toString();
+    }
 }
@@ -0,0 +1,109 @@
+package wyan.unicode;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import wyan.unicode.rule.Rule.Event;
+
+public class BreakMetricsTest {
+
+    private Unicode unicode = Unicode.getDefault();
+
+    @Test
+    public void testWordBreaker() {
+	BreakMetrics metrics = new BreakMetrics(unicode);
+	WordBreaker wb = new WordBreaker(unicode, metrics);
+	String text = "can't 1,234.5 a.b\r\n";
+	int[] words = new int[1];
+	wb.forEachSpan(text, (input, start, end, kind) -> words[0]++);
+	Assert.assertEquals(metrics.getChars(), text.length());
+	Assert.assertEquals(metrics.getTokens(), words[0]);
+	Map<String, Long> rules = metrics.getRuleHits();
+	// ' and , and . joined by WB6/WB7 and WB11/WB12, CR LF by WB3
+	Assert.assertEquals(rules.get("WB6").longValue(), 2);
+	Assert.assertEquals(rules.get("WB11").longValue(), 2);
+	Assert.assertEquals(rules.get("WB3").longValue(), 1);
+	long decisions = rules.values().stream().mapToLong(Long::longValue).sum();
+	Assert.assertEquals(metrics.getStageHits().values().stream().mapToLong(Long::longValue).sum(), decisions);
+	metrics.reset();
+	Assert.assertEquals(metrics.getChars(), 0);
+	Assert.assertEquals(metrics.getRuleHits().get("WB6").longValue(), 0);
+    }
+
+    /**
+     * the automaton makes same matches as the matcher, the break at end of
+     * text is implicit.
+     */
+    @Test
+    public void testSameAsMatcher() {
+	BreakMetrics breakerMetrics = new BreakMetrics(unicode);
+	WordBreaker wb = new WordBreaker(unicode, breakerMetrics);
+	BreakMetrics matcherMetrics = new BreakMetrics(unicode);
+	RuleMatcher matcher = new RuleMatcher(unicode);
+	matcher.setMetrics(matcherMetrics);
+	Random random = new Random(0);
+	String samples = "aZ1 .,'\":\r\nא゠̀­_中";
+	for (int i = 0; i < 500; i++) {
+	    StringBuilder sb = new StringBuilder();
+	    int length = random.nextInt(12) + 1;
+	    for (int j = 0; j < length; j++) {
+		sb.append(samples.charAt(random.nextInt(samples.length())));
+	    }
+	    String text = sb.toString();
+	    wb.forEachSpan(text, (input, start, end, kind) -> {
+	    });
+	    int from = TypeIndex.SOT_ORDINAL;
+	    for (int index = 0; index < text.length();) {
+		long r = matcher.matchPacked(text, index, from);
+		from = next(from, r);
+		index += RuleMatcher.getSize(r);
+	    }
+	}
+	Assert.assertEquals(breakerMetrics.getChars(), matcherMetrics.getChars());
+	Assert.assertEquals(breakerMetrics.getRuleHits(), matcherMetrics.getRuleHits());
+	Assert.assertEquals(breakerMetrics.getStageHits(), matcherMetrics.getStageHits());
+	Assert.assertEquals(breakerMetrics.getCandidates(), matcherMetrics.getCandidates());
+	Assert.assertTrue(breakerMetrics.getCandidates() > 0);
+    }
+
+    /**
+     * source state after a match, same as the rule compiler.
+     */
+    private int next(int from, long r) {
+	int rule = RuleMatcher.getRule(r);
+	int type = RuleMatcher.getType(r);
+	Event event = rule == -1 ? Event.BREAK : unicode.getResolvedRules().get(rule).getEvent();
+	if (event == Event.TRANS) {
+	    type = unicode.getResolvedRules().get(rule).getTarget();
+	}
+	return event != Event.BREAK && type == TypeIndex.ANY_ORDINAL ? from : type;
+    }
+
+    @Test
+    public void testDisabled() {
+	WordBreaker wb = new WordBreaker(unicode);
+	Assert.assertNull(wb.getMetrics());
+	RuleAutomaton automaton = new RuleCompiler(unicode).compile();
+	Assert.assertFalse(automaton.isTraced());
+	Assert.assertTrue(new RuleCompiler(unicode).compile(true).isTraced());
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+	BreakMetrics metrics = new BreakMetrics(unicode);
+	ObjectName name = metrics.register("test");
+	MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	try {
+	    Assert.assertEquals(server.getAttribute(name, "Chars"), 0L);
+	} finally {
+	    server.unregisterMBean(name);
+	}
+    }
+}
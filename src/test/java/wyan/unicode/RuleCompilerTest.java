@@ -0,0 +1,134 @@
+package wyan.unicode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import wyan.unicode.rule.Rule;
+import wyan.unicode.rule.Rule.Event;
+import wyan.unicode.type.Type;
+
+public class RuleCompilerTest {
+
+    /**
+     * compiled automaton must generate same words as the rule matcher.
+     */
+    @Test
+    public void testDefaultRules() {
+	Unicode unicode = Unicode.getDefault();
+	assertSameWords(unicode, samples(unicode), 5000);
+    }
+
+    //@formatter:off
+    @Test
+    public void testUserRules() {
+	Unicode unicode = new Unicode(Arrays.asList(
+		new Type("UPPER_CASE", 'A', 'Z'),
+		new Type("LOWER_CASE", 'a', 'z'),
+		new Type("QUOTE", '\'', '\''),
+		new Type("NUMBER", '0', '9')),
+	    Arrays.asList(
+		new Rule("LEFT_QUOTE", new String[] { "QUOTE", "UPPER_CASE" }, new String[] { "UPPER_CASE" }, "LOWER_CASE", Event.NOBREAK),
+		new Rule("RIGHT_QUOTE", new String[] { "UPPER_CASE" }, new String[] { "UPPER_CASE", "QUOTE" }, "QUOTE", Event.NOBREAK),
+		new Rule("UPPER_CASE", new String[] { "UPPER_CASE" }, new String[] { "UPPER_CASE" }, "UPPER_CASE", Event.NOBREAK),
+		new Rule("LOWER_CASE", new String[] { "LOWER_CASE" }, new String[] { "LOWER_CASE" }, "LOWER_CASE", Event.NOBREAK),
+		new Rule("NUMBER", new String[] { "NUMBER" }, new String[] { "NUMBER" }, "NUMBER", Event.NOBREAK),
+		new Rule("OTHER", new String[] { "ANY" }, new String[] { "ANY" }, "ANY", Event.BREAK)));
+	assertSameWords(unicode, new int[] { 'A', 'B', 'a', '\'', '1', ' ' }, 2000);
+    }
+    //@formatter:on
+
+    @Test
+    public void testMinimized() {
+	RuleAutomaton automaton = new RuleCompiler(Unicode.getDefault()).compile();
+	Assert.assertEquals(1, automaton.getDelay());
+	Assert.assertTrue(automaton.getStateCount() < 200, "states:" + automaton.getStateCount());
+    }
+
+    /**
+     * WB3a always breaks after LF, letters and punctuations are context.
+     */
+    @Test
+    public void testSafeSplit() {
+	Unicode unicode = Unicode.getDefault();
+	RuleAutomaton automaton = new RuleCompiler(unicode).compile();
+	TypeIndex index = unicode.getTypeIndex();
+	Assert.assertTrue(automaton.isSafeSplit(index.getTypeOrdinal('\n')));
+	Assert.assertFalse(automaton.isSafeSplit(index.getTypeOrdinal('\r')));
+	Assert.assertFalse(automaton.isSafeSplit(index.getTypeOrdinal('a')));
+	Assert.assertFalse(automaton.isSafeSplit(index.getTypeOrdinal('.')));
+    }
+
+    private void assertSameWords(Unicode unicode, int[] samples, int round) {
+	WordBreaker wb = new WordBreaker(unicode);
+	Random random = new Random(round);
+	for (int i = 0; i < round; i++) {
+	    StringBuilder sb = new StringBuilder();
+	    int length = random.nextInt(12) + 1;
+	    for (int j = 0; j < length; j++) {
+		sb.appendCodePoint(samples[random.nextInt(samples.length)]);
+	    }
+	    String text = sb.toString();
+	    Assert.assertEquals(splitWords(wb, text), matchWords(unicode, text), text);
+	}
+    }
+
+    /**
+     * one code point of each type, and a few common characters.
+     */
+    private int[] samples(Unicode unicode) {
+	List<Integer> cps = new ArrayList<>(Arrays.asList((int) 'a', (int) 'Z', (int) '1', (int) ' ', (int) '.',
+		(int) ',', (int) '\'', (int) '"', (int) ':', (int) '\r', (int) '\n', 0x05D0, 0x30A0, 0x0300, 0x00AD,
+		0x005F, 0x1F1E6, 0x4E2D));
+	for (Type t : unicode.getTypes().values()) {
+	    if (!t.getCodePoints().isEmpty()) {
+		cps.add(t.getCodePoints().get(0)[0]);
+	    }
+	}
+	return cps.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private String[] splitWords(WordBreaker wb, String text) {
+	ArrayList<String> words = new ArrayList<>();
+	Iterator<String> iter = wb.iterator(text);
+	while (iter.hasNext()) {
+	    words.add(iter.next());
+	}
+	return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * break words by searching rules for each character, the reference of
+     * word breaker tests.
+     */
+    static String[] matchWords(Unicode unicode, String text) {
+	ArrayList<String> words = new ArrayList<>();
+	RuleMatcher matcher = new RuleMatcher(unicode);
+	Type type = Type.SOT;
+	int index = 0;
+	int wordStart = 0;
+	while (type != Type.EOT) {
+	    RuleMatcher.MatchResult r = matcher.match(text, index, type);
+	    Event event = r.rule == null ? Event.BREAK : r.rule.getEvent();
+	    if (event == Event.BREAK) {
+		if (index > wordStart) {
+		    words.add(text.substring(wordStart, index));
+		}
+		wordStart = index;
+		type = r.type;
+	    } else {
+		Type target = event == Event.TRANS ? unicode.getType(r.rule.getTarget()) : r.type;
+		if (target != Type.ANY) {
+		    type = target;
+		}
+	    }
+	    index += r.size;
+	}
+	return words.toArray(new String[words.size()]);
+    }
+}
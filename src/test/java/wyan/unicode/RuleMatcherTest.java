@@ -1,5 +1,6 @@
 package wyan.unicode;
 
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 
 import org.testng.Assert;
@@ -91,4 +92,82 @@ public class RuleMatcherTest {
     }
     
    // @formatter:on 
+
+    @Test
+    public void testDecisionMatrix() {
+	Unicode unicode = Unicode.getDefault();
+	RuleMatcher matcher = new RuleMatcher(unicode);
+	TypeIndex types = unicode.getTypeIndex();
+	Assert.assertEquals(matcher.getDecision(types.getTypeOrdinal('a'), types.getTypeOrdinal('b')),
+		RuleMatcher.NOBREAK);
+	Assert.assertEquals(matcher.getDecision(types.getTypeOrdinal('\r'), types.getTypeOrdinal('\n')),
+		RuleMatcher.NOBREAK);
+	Assert.assertEquals(matcher.getDecision(types.getTypeOrdinal('\n'), types.getTypeOrdinal('a')),
+		RuleMatcher.BREAK);
+	Assert.assertEquals(matcher.getDecision(types.getTypeOrdinal('a'), types.getTypeOrdinal(0x0300)),
+		RuleMatcher.TRANS);
+	// WB6 needs the letter after the quote
+	Assert.assertEquals(matcher.getDecision(types.getTypeOrdinal('a'), types.getTypeOrdinal('\'')),
+		RuleMatcher.NEEDS_CONTEXT);
+    }
+
+    /**
+     * the matrix should return same results as searching the rules.
+     */
+    @Test
+    public void testDecisionMatrixSameAsSearch() {
+	Unicode unicode = Unicode.getDefault();
+	RuleMatcher matcher = new RuleMatcher(unicode);
+	TypeIndex types = unicode.getTypeIndex();
+	String samples = "a1.,'\"_ \r\n\u0300\u00AD\u05D0\u30A2\u4E2D";
+	for (int from = 0; from < types.getTypeCount(); from++) {
+	    for (char before : samples.toCharArray()) {
+		for (char next : samples.toCharArray()) {
+		    for (char after : samples.toCharArray()) {
+			String text = new String(new char[] { before, next, after });
+			Assert.assertEquals(matcher.matchPacked(text, 1, from),
+				matcher.matchContext(text, 1, from, 1, types.getTypeOrdinal(next)), text);
+		    }
+		}
+		String text = String.valueOf(before);
+		Assert.assertEquals(matcher.matchPacked(text, 1, from),
+			matcher.matchContext(text, 1, from, 0, TypeIndex.EOT_ORDINAL), text);
+	    }
+	}
+    }
+
+    /**
+     * packed match should not allocate any object.
+     */
+    @Test
+    public void testMatchPacked() {
+	Unicode unicode = Unicode.getDefault();
+	RuleMatcher matcher = new RuleMatcher(unicode);
+	String text = "a1.2 b'c \u05d0\"\u05d0 \u4e2d\r\n";
+	int from = TypeIndex.SOT_ORDINAL;
+	for (int i = 0; i <= text.length(); i++) {
+	    long r = matcher.matchPacked(text, i, from);
+	    RuleMatcher.MatchResult result = matcher.match(text, i, unicode.getTypeIndex().getTypeByOrdinal(from));
+	    Assert.assertEquals(RuleMatcher.getSize(r), result.size);
+	    Assert.assertEquals(RuleMatcher.getType(r), unicode.getTypeIndex().getOrdinal(result.type));
+	    Assert.assertEquals(RuleMatcher.getRule(r), result.rule == null ? -1
+		    : unicode.getRules().indexOf(result.rule));
+	    from = RuleMatcher.getType(r);
+	}
+	com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+		.getThreadMXBean();
+	long thread = Thread.currentThread().getId();
+	long allocated = Long.MAX_VALUE;
+	for (int round = 0; round < 5; round++) {
+	    long start = bean.getThreadAllocatedBytes(thread);
+	    from = TypeIndex.SOT_ORDINAL;
+	    for (int n = 0; n < 1000; n++) {
+		for (int i = 0; i < text.length(); i++) {
+		    from = RuleMatcher.getType(matcher.matchPacked(text, i, from));
+		}
+	    }
+	    allocated = Math.min(allocated, bean.getThreadAllocatedBytes(thread) - start);
+	}
+	Assert.assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+    }
 }
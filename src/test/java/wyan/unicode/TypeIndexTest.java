@@ -34,4 +34,35 @@ public class TypeIndexTest {
 	Assert.assertEquals(index.getType("OTHER"), index.getType(':'));
 
     }
+
+    /**
+     * a type shared by two indexes has its own ordinal in each.
+     */
+    @Test
+    public void testOrdinals() {
+	Type low = new Type("low", 'a', 'z');
+	Type upper = new Type("upper", 'A', 'Z');
+	TypeIndex first = new TypeIndex(Arrays.asList(low, upper));
+	TypeIndex second = new TypeIndex(Arrays.asList(upper, low));
+	Assert.assertEquals(first.getOrdinal(low), 4);
+	Assert.assertEquals(second.getOrdinal(low), 5);
+	Assert.assertEquals(first.getOrdinal("upper"), 5);
+	Assert.assertEquals(second.getOrdinal("upper"), 4);
+	Assert.assertEquals(first.getTypeOrdinal('a'), 4);
+	Assert.assertEquals(second.getTypeOrdinal('a'), 5);
+	Assert.assertEquals(first.getOrdinal(Type.ANY), TypeIndex.ANY_ORDINAL);
+	Assert.assertEquals(first.getOrdinal(new Type("low", 'a', 'z')), -1);
+	Assert.assertEquals(first.getOrdinal("number"), -1);
+    }
+
+    @Test
+    public void testTable() {
+	TypeIndex index = Unicode.getDefault().getTypeIndex();
+	for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+	    Assert.assertEquals(index.getTypeOrdinal(cp), index.searchTypeOrdinal(cp));
+	}
+	Assert.assertEquals(TypeIndex.OTHER_ORDINAL, index.getTypeOrdinal(-1));
+	Assert.assertEquals(TypeIndex.OTHER_ORDINAL, index.getTypeOrdinal(Character.MAX_CODE_POINT + 1));
+	Assert.assertEquals(index.getType("KATAKANA"), index.getType(0x30A0));
+    }
 }
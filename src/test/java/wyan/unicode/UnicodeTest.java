@@ -5,6 +5,7 @@ import java.io.IOException;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import wyan.unicode.rule.ResolvedRule;
 import wyan.unicode.type.Type;
 
 public class UnicodeTest {
@@ -29,4 +30,22 @@ public class UnicodeTest {
 	// test some type loaded from property file
 	Assert.assertNotNull(u.getType("HEBREW_LETTER"));
     }
+
+    @Test
+    public void testResolvedRules() throws IOException {
+	Unicode u = Unicode.getDefault();
+	Assert.assertEquals(u.getRules().size(), u.getResolvedRules().size());
+	TypeIndex index = u.getTypeIndex();
+	for (ResolvedRule rule : u.getResolvedRules()) {
+	    Assert.assertSame(u.getRules().get(rule.getId()), rule.getRule());
+	    Assert.assertEquals(rule.getLastSource(), index.getOrdinal(rule.getRule().getLastSource()));
+	    Assert.assertEquals(rule.getFirstNext(), index.getOrdinal(rule.getRule().getFirstNext()));
+	    Assert.assertEquals(rule.getTarget(), index.getOrdinal(rule.getRule().getTarget()));
+	}
+	// type ordinals are dense
+	for (int i = 0; i < index.getTypeCount(); i++) {
+	    Assert.assertEquals(i, index.getOrdinal(index.getTypeByOrdinal(i)));
+	}
+	Assert.assertEquals(TypeIndex.ANY_ORDINAL, index.getOrdinal(Type.ANY));
+    }
 }
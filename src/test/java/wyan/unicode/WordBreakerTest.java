@@ -1,8 +1,20 @@
 package wyan.unicode;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Random;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -10,6 +22,7 @@ import org.testng.annotations.Test;
 import wyan.unicode.rule.Rule;
 import wyan.unicode.rule.Rule.Event;
 import wyan.unicode.type.Type;
+import wyan.util.Utf8;
 
 public class WordBreakerTest {
 
@@ -100,6 +113,193 @@ public class WordBreakerTest {
 	Assert.assertEquals(new String[] { "中", "文" }, splitWords(wb, "中文"));
     }
 
+    /**
+     * executor should not allocate any object for characters.
+     */
+    @Test
+    public void testNoAllocation() {
+	WordBreaker wb = WordBreaker.getDefaultInstance();
+	StringBuilder sb = new StringBuilder();
+	for (int i = 0; i < 10000; i++) {
+	    sb.append("a1.2 b'c \u05d0\"\u05d0 \u4e2d\u6587\r\n\uD83C\uDDE6\u0300 ");
+	}
+	String text = sb.toString();
+	com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+		.getThreadMXBean();
+	long thread = Thread.currentThread().getId();
+	long allocated = Long.MAX_VALUE;
+	int words = 0;
+	// repeat to exclude allocations of class loading and compilation
+	for (int i = 0; i < 5; i++) {
+	    WordBreaker.RuleExecutor executor = wb.executor(text);
+	    long start = bean.getThreadAllocatedBytes(thread);
+	    words = 0;
+	    while (!executor.isDone()) {
+		if (executor.execute()) {
+		    words++;
+		}
+	    }
+	    allocated = Math.min(allocated, bean.getThreadAllocatedBytes(thread) - start);
+	}
+	Assert.assertEquals(words, splitWords(wb, text).length);
+	Assert.assertTrue(allocated < 1024, "allocated " + allocated + " bytes for " + text.length() + " chars");
+    }
+
+    /**
+     * spans should cover the text with same words as iterator.
+     */
+    @Test
+    public void testForEachSpan() {
+	WordBreaker wb = WordBreaker.getDefaultInstance();
+	TypeIndex types = Unicode.getDefault().getTypeIndex();
+	String text = "$123 a:b \u05d0\"\u05d0\r\n\uD83C\uDDE6\uD83C\uDDE6\u4e2d\u6587 ";
+	ArrayList<String> words = new ArrayList<>();
+	int[] last = new int[1];
+	wb.forEachSpan(new StringBuilder(text), (t, start, end, kind) -> {
+	    Assert.assertEquals(start, last[0]);
+	    Assert.assertEquals(kind, types.getType(Character.codePointAt(t, start)));
+	    words.add(t.subSequence(start, end).toString());
+	    last[0] = end;
+	});
+	Assert.assertEquals(last[0], text.length());
+	Assert.assertEquals(words.toArray(new String[words.size()]), splitWords(wb, text));
+	wb.forEachSpan("", (t, start, end, kind) -> Assert.fail());
+    }
+
+    /**
+     * streaming with small windows should generate same words as the whole
+     * text, including words and surrogate pairs across the window boundary.
+     */
+    @Test
+    public void testForEachSpanReader() throws IOException {
+	WordBreaker wb = WordBreaker.getDefaultInstance();
+	String[] samples = { "a", "1", ".", "'", " ", "\r\n", "\u05d0", "\"", "\u4e2d", "\uD83C\uDDE6", "\u0300",
+		"\uD800", "abcdefghijklmnopqrstuvwxyz" };
+	Random random = new Random(0);
+	for (int round = 0; round < 200; round++) {
+	    StringBuilder sb = new StringBuilder();
+	    for (int i = random.nextInt(40); i >= 0; i--) {
+		sb.append(samples[random.nextInt(samples.length)]);
+	    }
+	    String text = sb.toString();
+	    String[] expected = splitWords(wb, text);
+	    for (int window : new int[] { 2, 3, 7, 64 }) {
+		Assert.assertEquals(streamWords(wb, new StringReader(text), window), expected, text);
+	    }
+	    // reader returns one character for each read
+	    Reader slow = new FilterReader(new StringReader(text)) {
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+		    return super.read(cbuf, off, Math.min(len, 1));
+		}
+	    };
+	    Assert.assertEquals(streamWords(wb, slow, 4), expected, text);
+	}
+    }
+
+    /**
+     * breaking UTF-8 bytes should generate same words as the decoded text,
+     * also when the file is mapped in small regions.
+     */
+    @Test
+    public void testForEachSpanBytes() throws IOException {
+	WordBreaker wb = WordBreaker.getDefaultInstance();
+	String[] samples = { "a", "1", ".", "'", " ", "\r\n", "\u05d0", "\"", "\u4e2d", "\uD83C\uDDE6", "\u0300",
+		"\u00e9", "abcdefghijklmnopqrstuvwxyz" };
+	Random random = new Random(0);
+	Path file = Files.createTempFile("wordbreaker", ".txt");
+	try {
+	    for (int round = 0; round < 100; round++) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = random.nextInt(40); i >= 0; i--) {
+		    sb.append(samples[random.nextInt(samples.length)]);
+		}
+		String text = sb.toString();
+		String[] expected = splitWords(wb, text);
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 3);
+		buffer.position(3);
+		buffer.put(bytes).position(3);
+		Assert.assertEquals(byteWords(wb, buffer), expected, text);
+		Assert.assertEquals(buffer.position(), 3);
+		Files.write(file, bytes);
+		for (int region : new int[] { 16, 17, 31 }) {
+		    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Assert.assertEquals(fileWords(wb, channel, region), expected, text);
+		    }
+		}
+	    }
+	} finally {
+	    Files.delete(file);
+	}
+	// a malformed sequence is read as one U+FFFD
+	ByteBuffer malformed = ByteBuffer.wrap(new byte[] { 'a', (byte) 0xe4, (byte) 0xb8, 'b', (byte) 0xff });
+	Assert.assertEquals(byteWords(wb, malformed), new String[] { "a", "\ufffd", "b", "\ufffd" });
+    }
+
+    /**
+     * long ASCII runs are read in bulk, the words must be same as the rule
+     * matcher, also around the punctuations between letters and digits.
+     */
+    @Test
+    public void testAsciiRuns() {
+	Unicode unicode = Unicode.getDefault();
+	WordBreaker wb = new WordBreaker(unicode);
+	String[] pieces = { "abc", "Hello", "12345", "a", "1", ".", ",", "'", "\"", "_", " ", "\r\n", "\u00AD",
+		"\u0300", "\u05D0", "\u4E2D" };
+	Random random = new Random(0);
+	for (int i = 0; i < 2000; i++) {
+	    StringBuilder sb = new StringBuilder();
+	    for (int j = random.nextInt(16); j >= 0; j--) {
+		sb.append(pieces[random.nextInt(pieces.length)]);
+	    }
+	    String text = sb.toString();
+	    Assert.assertEquals(splitWords(wb, text), RuleCompilerTest.matchWords(unicode, text), text);
+	}
+    }
+
+    /**
+     * the split is after a LF inside the range, searched backward if there is
+     * no LF after the middle.
+     */
+    @Test
+    public void testFindSplit() {
+	WordBreaker wb = WordBreaker.getDefaultInstance();
+	String text = "a b\nc d e f g h i j\nk";
+	Assert.assertEquals(wb.findSplit(text, 0, text.length()), 20);
+	// LF only in the first half
+	Assert.assertEquals(wb.findSplit(text, 0, 18), 4);
+	// LF at the end of the range is not a split inside it
+	Assert.assertEquals(wb.findSplit(text, 4, 20), -1);
+	Assert.assertEquals(wb.findSplit(text, 4, 21), 20);
+	Assert.assertEquals(wb.findSplit("a b c", 0, 5), -1);
+	Assert.assertEquals(wb.findSplit("\n\n", 0, 2), 1);
+	Assert.assertEquals(wb.findSplit("", 0, 0), -1);
+    }
+
+    private String[] byteWords(WordBreaker wb, ByteBuffer bytes) {
+	ArrayList<String> words = new ArrayList<>();
+	wb.forEachSpan(bytes, (b, start, end, kind) -> words.add(decode(b, start, end)));
+	return words.toArray(new String[words.size()]);
+    }
+
+    private String[] fileWords(WordBreaker wb, FileChannel channel, int region) throws IOException {
+	ArrayList<String> words = new ArrayList<>();
+	wb.forEachSpan(channel, (b, start, end, kind) -> words.add(decode(b, start, end)), region);
+	return words.toArray(new String[words.size()]);
+    }
+
+    private String decode(ByteBuffer bytes, int start, int end) {
+	char[] chars = new char[end - start];
+	return new String(chars, 0, Utf8.decode(bytes, start, end, chars, 0));
+    }
+
+    private String[] streamWords(WordBreaker wb, Reader reader, int window) throws IOException {
+	ArrayList<String> words = new ArrayList<>();
+	wb.forEachSpan(reader, (t, start, end, kind) -> words.add(t.subSequence(start, end).toString()), window);
+	return words.toArray(new String[words.size()]);
+    }
+
     private String[] splitWords(WordBreaker wb, String text) {
 	ArrayList<String> words = new ArrayList<>();
 	Iterator<String> iter = wb.iterator(text);
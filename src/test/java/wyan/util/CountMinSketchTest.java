@@ -0,0 +1,51 @@
+package wyan.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CountMinSketchTest {
+
+    /**
+     * estimates are never less than real counts, and close to them if the
+     * sketch is wide enough.
+     */
+    @Test
+    public void testEstimate() {
+	CountMinSketch sketch = new CountMinSketch(1 << 16);
+	Map<String, Integer> expected = new HashMap<>();
+	Random random = new Random(0);
+	for (int i = 0; i < 100000; i++) {
+	    String word = "w" + random.nextInt(random.nextBoolean() ? 10 : 5000);
+	    long estimate;
+	    if (i % 2 == 0) {
+		estimate = sketch.add(word, 0, word.length());
+	    } else {
+		estimate = sketch.add(("<" + word + ">").toCharArray(), 1, word.length() + 1);
+	    }
+	    int real = expected.merge(word, 1, Integer::sum);
+	    Assert.assertTrue(estimate >= real, word);
+	}
+	Assert.assertEquals(sketch.getTotal(), 100000);
+	long over = 0;
+	for (Map.Entry<String, Integer> e : expected.entrySet()) {
+	    String word = e.getKey();
+	    long estimate = sketch.estimate(word, 0, word.length());
+	    Assert.assertEquals(sketch.estimate(word.toCharArray(), 0, word.length()), estimate);
+	    Assert.assertTrue(estimate >= e.getValue(), word);
+	    over += estimate - e.getValue();
+	}
+	Assert.assertTrue(over < expected.size(), "over estimation:" + over);
+	Assert.assertEquals(sketch.estimate("not exist", 0, 9) < 10, true);
+    }
+
+    @Test
+    public void testWidth() {
+	Assert.assertEquals(new CountMinSketch(0).getWidth(), CountMinSketch.MIN_WIDTH);
+	Assert.assertEquals(new CountMinSketch(1 << 20).getWidth(), 1 << 16);
+	Assert.assertEquals(new CountMinSketch((1 << 20) - 1).getWidth(), 1 << 15);
+    }
+}
@@ -0,0 +1,137 @@
+package wyan.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CountTableTest {
+
+    /**
+     * table should count same as a map, ids are in order of first occurrence.
+     */
+    @Test
+    public void testAdd() {
+	CountTable table = new CountTable();
+	Map<String, Integer> expected = new LinkedHashMap<>();
+	Random random = new Random(0);
+	String text = "..." + randomWord(random, 1) + "...";
+	for (int i = 0; i < 100000; i++) {
+	    String word = randomWord(random, 4);
+	    if (i % 2 == 0) {
+		// word in the middle of a text
+		String t = "<" + word + ">";
+		table.add(t, 1, t.length() - 1);
+	    } else {
+		table.add(word.toCharArray(), 0, word.length(), 1);
+	    }
+	    expected.merge(word, 1, Integer::sum);
+	}
+	table.add(text, 3, 3);
+	expected.merge("", 1, Integer::sum);
+	Assert.assertEquals(table.size(), expected.size());
+	int id = 0;
+	for (Map.Entry<String, Integer> e : expected.entrySet()) {
+	    Assert.assertEquals(table.getWord(id), e.getKey());
+	    Assert.assertEquals(table.getCount(id), e.getValue().intValue());
+	    Assert.assertEquals(table.find(e.getKey(), 0, e.getKey().length()), id);
+	    id++;
+	}
+	Assert.assertEquals(table.find("not exist", 0, 9), -1);
+    }
+
+    @Test
+    public void testSubtractAll() {
+	CountTable t1 = new CountTable();
+	t1.add("a", 0, 1, 3);
+	t1.add("b", 0, 1, 2);
+	CountTable t2 = new CountTable();
+	t2.add("b", 0, 1, 2);
+	t2.add("a", 0, 1, 1);
+	t1.subtractAll(t2);
+	Assert.assertEquals(t1.size(), 2);
+	Assert.assertEquals(t1.getCount(0), 2);
+	Assert.assertEquals(t1.getCount(1), 0);
+	t1.clear();
+	Assert.assertEquals(t1.size(), 0);
+	Assert.assertEquals(t1.find("a", 0, 1), -1);
+	Assert.assertEquals(t1.add("c", 0, 1), 0);
+	Assert.assertEquals(t1.getWord(0), "c");
+	Assert.assertEquals(t1.getCount(0), 1);
+    }
+
+    @Test
+    public void testAddAll() {
+	CountTable t1 = new CountTable();
+	t1.add("a b", 0, 1);
+	t1.add("a b", 2, 3);
+	CountTable t2 = new CountTable();
+	t2.add("c", 0, 1, 5);
+	t2.add("b", 0, 1, 2);
+	t1.addAll(t2);
+	Assert.assertEquals(t1.size(), 3);
+	Assert.assertEquals(t1.getWord(2), "c");
+	Assert.assertEquals(t1.getCount(1), 3);
+	Assert.assertEquals(t1.getCount(2), 5);
+    }
+
+    /**
+     * bucket selection should return same ids as heap selection.
+     */
+    @Test
+    public void testTop() {
+	Random random = new Random(0);
+	for (int words : new int[] { 1, 10, 1000, 5000 }) {
+	    CountTable table = new CountTable();
+	    for (int i = 0; i < words; i++) {
+		String w = Integer.toString(i);
+		// mostly small counts, a few large ones
+		int count = random.nextInt(10) == 0 ? random.nextInt(100000) : random.nextInt(5);
+		table.add(w, 0, w.length(), count);
+	    }
+	    for (int n : new int[] { 1, 2, 10, 999, 1000, 1001, 100000 }) {
+		int[] expected = table.topByHeap(n);
+		Assert.assertEquals(expected.length, Math.min(n, words));
+		Assert.assertEquals(table.topByBucket(n), expected);
+		Assert.assertEquals(table.top(n), expected);
+	    }
+	}
+    }
+
+    /**
+     * arrays are doubled up to the max length, and never overflow.
+     */
+    @Test
+    public void testGrow() {
+	Assert.assertEquals(CountTable.grow(16, 17, CountTable.MAX_WORDS), 32);
+	Assert.assertEquals(CountTable.grow(128, 1000, CountTable.MAX_CHARS), 1000);
+	Assert.assertEquals(CountTable.grow(1 << 28, (1 << 28) + 1, CountTable.MAX_WORDS), CountTable.MAX_WORDS);
+	Assert.assertEquals(CountTable.grow(1 << 30, (1 << 30) + 1, CountTable.MAX_CHARS), CountTable.MAX_CHARS);
+	Assert.assertEquals(CountTable.grow(CountTable.MAX_CHARS - 1, CountTable.MAX_CHARS, CountTable.MAX_CHARS),
+		CountTable.MAX_CHARS);
+	for (long required : new long[] { CountTable.MAX_CHARS + 1L, Integer.MAX_VALUE + 100L }) {
+	    try {
+		CountTable.grow(1 << 30, required, CountTable.MAX_CHARS);
+		Assert.fail("grow " + required);
+	    } catch (IllegalStateException ex) {
+		// expected
+	    }
+	}
+	try {
+	    CountTable.grow(CountTable.MAX_WORDS, CountTable.MAX_WORDS + 1L, CountTable.MAX_WORDS);
+	    Assert.fail("grow words");
+	} catch (IllegalStateException ex) {
+	    // expected
+	}
+    }
+
+    private String randomWord(Random random, int maxLength) {
+	StringBuilder sb = new StringBuilder();
+	for (int i = random.nextInt(maxLength) + 1; i > 0; i--) {
+	    sb.append((char) ('a' + random.nextInt(26)));
+	}
+	return sb.toString();
+    }
+}
@@ -2,6 +2,8 @@ package wyan.util;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
 import java.util.stream.Stream;
 
 import org.testng.Assert;
@@ -88,6 +90,27 @@ public class HeapTest {
 	Assert.assertNull(heap.poll());
     }
 
+    /**
+     * offer after poll should keep the heap valid.
+     */
+    @Test
+    public void testOfferAfterPoll() {
+	Random random = new Random(0);
+	Heap<Integer> heap = new Heap<Integer>(20);
+	TreeSet<Integer> expected = new TreeSet<>();
+	for (int i = 0; i < 10000; i++) {
+	    if (random.nextInt(3) == 0) {
+		Assert.assertEquals(heap.poll(), expected.pollLast());
+	    } else {
+		int v = random.nextInt(1000000);
+		if (expected.add(v)) {
+		    Assert.assertEquals(heap.offer(v), expected.size() <= 20 || expected.pollFirst() != v);
+		}
+	    }
+	    Assert.assertEquals(heap.size(), expected.size());
+	}
+    }
+
     @Test
     public void testIterator() {
 	Heap<String> heap = new Heap<String>(50);
@@ -0,0 +1,73 @@
+package wyan.util;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class IndexedHeapTest {
+
+    /**
+     * offering increased counts keeps the same top ids as selecting from all
+     * counts.
+     */
+    @Test
+    public void testIncrement() {
+	int[] counts = new int[500];
+	IndexedHeap heap = new IndexedHeap(10);
+	Random random = new Random(0);
+	for (int i = 0; i < 20000; i++) {
+	    int id = random.nextBoolean() ? random.nextInt(20) : random.nextInt(counts.length);
+	    counts[id]++;
+	    heap.offer(id, counts[id]);
+	    if (i % 499 == 0) {
+		// ids are added in order, same counts are ordered by id
+		CountTable table = new CountTable();
+		for (int k = 0; k < counts.length; k++) {
+		    String w = Integer.toString(k);
+		    table.add(w, 0, w.length(), counts[k]);
+		}
+		int[] expected = table.topByHeap(10);
+		int[] ids = heap.toSortedArray();
+		for (int k = 0; k < ids.length; k++) {
+		    Assert.assertEquals(Integer.toString(ids[k]), table.getWord(expected[k]));
+		    Assert.assertTrue(heap.contains(ids[k]));
+		    Assert.assertEquals(heap.getKey(ids[k]), counts[ids[k]]);
+		}
+	    }
+	}
+	Assert.assertEquals(heap.size(), 10);
+	Assert.assertEquals(heap.peekKey(), counts[heap.peekId()]);
+    }
+
+    @Test
+    public void testOffer() {
+	IndexedHeap heap = new IndexedHeap(2);
+	Assert.assertTrue(heap.isEmpty());
+	Assert.assertTrue(heap.offer(100, 1));
+	Assert.assertTrue(heap.offer(3, 1));
+	// same key, larger id is not kept
+	Assert.assertFalse(heap.offer(200, 1));
+	Assert.assertTrue(heap.offer(200, 2));
+	Assert.assertFalse(heap.contains(100));
+	Assert.assertTrue(heap.contains(3));
+	Assert.assertFalse(heap.contains(1 << 20));
+	Assert.assertEquals(heap.toSortedArray(), new int[] { 200, 3 });
+	Assert.assertTrue(heap.offer(3, 5));
+	Assert.assertEquals(heap.toSortedArray(), new int[] { 3, 200 });
+	Assert.assertEquals(heap.peekId(), 200);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDecrease() {
+	IndexedHeap heap = new IndexedHeap(2);
+	heap.offer(1, 5);
+	heap.offer(1, 4);
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void testGetKey() {
+	new IndexedHeap(2).getKey(0);
+    }
+}
@@ -0,0 +1,48 @@
+package wyan.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class IntHeapTest {
+
+    /**
+     * heap should keep the largest keys, the smaller value first for same
+     * keys.
+     */
+    @Test
+    public void testRandom() {
+	Random random = new Random(0);
+	for (int n : new int[] { 1, 7, 100, 5000 }) {
+	    int[][] entries = new int[10000][];
+	    IntHeap heap = new IntHeap(n);
+	    for (int i = 0; i < entries.length; i++) {
+		entries[i] = new int[] { random.nextInt(100) - 50, i };
+		heap.offer(entries[i][0], entries[i][1]);
+	    }
+	    Arrays.sort(entries, Comparator.<int[]> comparingInt(e -> -e[0]).thenComparingInt(e -> e[1]));
+	    Assert.assertEquals(heap.size(), n);
+	    for (int i = 0; i < n; i++) {
+		Assert.assertEquals(heap.peekKey(), entries[i][0]);
+		Assert.assertEquals(heap.peekValue(), entries[i][1]);
+		Assert.assertEquals(heap.poll(), entries[i][1]);
+	    }
+	    Assert.assertTrue(heap.isEmpty());
+	}
+    }
+
+    @Test
+    public void testExtremeValues() {
+	IntHeap heap = new IntHeap(3);
+	heap.offer(Integer.MIN_VALUE, Integer.MAX_VALUE);
+	heap.offer(Integer.MAX_VALUE, Integer.MIN_VALUE);
+	heap.offer(0, -1);
+	heap.offer(0, 0);
+	Assert.assertEquals(heap.poll(), Integer.MIN_VALUE);
+	Assert.assertEquals(heap.poll(), -1);
+	Assert.assertEquals(heap.poll(), 0);
+    }
+}
@@ -0,0 +1,127 @@
+package wyan.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RankTableTest {
+
+    /**
+     * top words read at any moment should be same as a count table.
+     */
+    @Test
+    public void testTop() {
+	RankTable ranks = new RankTable();
+	CountTable counts = new CountTable();
+	Assert.assertEquals(ranks.top(3).length, 0);
+	Random random = new Random(0);
+	for (int i = 0; i < 20000; i++) {
+	    String word = "w" + random.nextInt(random.nextBoolean() ? 20 : 2000);
+	    if (i % 2 == 0) {
+		ranks.add(word, 0, word.length());
+	    } else {
+		ranks.add(word.toCharArray(), 0, word.length());
+	    }
+	    counts.add(word, 0, word.length());
+	    if (i % 997 == 0) {
+		for (int n : new int[] { 1, 5, 50, 5000 }) {
+		    Assert.assertEquals(ranks.top(n), counts.top(n), "n=" + n);
+		}
+	    }
+	}
+	Assert.assertEquals(ranks.size(), counts.size());
+    }
+
+    /**
+     * words reach a count in a different order than they first occur, ties
+     * are still ordered by first occurrence.
+     */
+    @Test
+    public void testTieOrder() {
+	RankTable ranks = new RankTable();
+	// all words reach count 2 in reverse order
+	String text = "a b c d d c b a";
+	for (int i = 0; i < text.length(); i += 2) {
+	    ranks.add(text, i, i + 1);
+	}
+	int[] top = ranks.top(4);
+	String[] words = new String[top.length];
+	for (int i = 0; i < top.length; i++) {
+	    words[i] = ranks.getWord(top[i]);
+	}
+	Assert.assertEquals(words, new String[] { "a", "b", "c", "d" });
+	Assert.assertEquals(ranks.getWord(ranks.top(1)[0]), "a");
+	ranks.add(text, 6, 7);
+	ranks.add(text, 4, 5);
+	Assert.assertEquals(ranks.getWord(ranks.top(1)[0]), "c");
+	Assert.assertEquals(ranks.getWord(ranks.top(2)[1]), "d");
+	Assert.assertEquals(ranks.getWord(ranks.top(3)[2]), "a");
+    }
+
+    /**
+     * words leave the ranking when their counts are subtracted, the top
+     * words are same as a count table without the words of count 0.
+     */
+    @Test
+    public void testSubtract() {
+	RankTable ranks = new RankTable();
+	CountTable counts = new CountTable();
+	Random random = new Random(0);
+	CountTable[] batches = new CountTable[4];
+	for (int round = 0; round < 400; round++) {
+	    if (round == 200) {
+		ranks.clear();
+		counts.clear();
+		Arrays.fill(batches, null);
+	    }
+	    int slot = round % batches.length;
+	    if (batches[slot] != null) {
+		ranks.subtractAll(batches[slot]);
+		counts.subtractAll(batches[slot]);
+	    }
+	    CountTable batch = new CountTable();
+	    for (int i = random.nextInt(50); i > 0; i--) {
+		String word = "w" + random.nextInt(random.nextBoolean() ? 5 : 100);
+		ranks.add(word, 0, word.length());
+		counts.add(word, 0, word.length());
+		batch.add(word, 0, word.length());
+	    }
+	    batches[slot] = batch;
+	    int[] expected = counts.top(counts.size());
+	    int live = 0;
+	    while (live < expected.length && counts.getCount(expected[live]) > 0) {
+		live++;
+	    }
+	    for (int n : new int[] { 1, 3, 20, 200 }) {
+		Assert.assertEquals(ranks.top(n), Arrays.copyOf(expected, Math.min(n, live)), "n=" + n);
+	    }
+	}
+	// rebuilt from a count table with words of count 0
+	RankTable rebuilt = new RankTable();
+	rebuilt.addAll(counts);
+	Assert.assertEquals(rebuilt.top(200), ranks.top(200));
+    }
+
+    @Test
+    public void testAddAll() {
+	RankTable t1 = new RankTable();
+	t1.add("a b b", 0, 1);
+	t1.add("a b b", 2, 3);
+	RankTable t2 = new RankTable();
+	t2.add("c", 0, 1);
+	t2.add("c", 0, 1);
+	t2.add("b", 0, 1);
+	t1.addAll(t2);
+	Assert.assertEquals(t1.size(), 3);
+	int[] top = t1.top(3);
+	Assert.assertEquals(t1.getWord(top[0]), "b");
+	Assert.assertEquals(t1.getWord(top[1]), "c");
+	Assert.assertEquals(t1.getCount(top[2]), 1);
+	// order is still kept after merge
+	t1.add("a", 0, 1);
+	t1.add("a", 0, 1);
+	Assert.assertEquals(t1.getWord(t1.top(1)[0]), "a");
+    }
+}
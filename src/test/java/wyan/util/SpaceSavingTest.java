@@ -0,0 +1,100 @@
+package wyan.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SpaceSavingTest {
+
+    /**
+     * counts are exact before all counters are used.
+     */
+    @Test
+    public void testExact() {
+	SpaceSaving s = new SpaceSaving(16);
+	String text = "a b a c a b";
+	for (int i = 0; i < text.length(); i += 2) {
+	    s.add(text, i, i + 1);
+	}
+	int[] top = s.top(5);
+	Assert.assertEquals(top.length, 3);
+	Assert.assertEquals(s.getWord(top[0]), "a");
+	Assert.assertEquals(s.getCount(top[0]), 3);
+	Assert.assertEquals(s.getWord(top[1]), "b");
+	Assert.assertEquals(s.getError(top[2]), 0);
+	Assert.assertEquals(s.getMinCount(), 0);
+	Assert.assertEquals(s.getTotal(), 6);
+    }
+
+    /**
+     * on a skewed stream with many more words than counters, every real count
+     * must be in bounds and frequent words must be monitored.
+     */
+    @Test
+    public void testBounds() {
+	SpaceSaving s = new SpaceSaving(64);
+	Map<String, Integer> expected = new HashMap<>();
+	Random random = new Random(0);
+	for (int i = 0; i < 200000; i++) {
+	    // half of words are from 8 frequent words, the rest are rare
+	    String word = random.nextBoolean() ? "w" + random.nextInt(8) : "rare" + random.nextInt(100000);
+	    if (i % 2 == 0) {
+		s.add(word, 0, word.length());
+	    } else {
+		s.add(("<" + word + ">").toCharArray(), 1, word.length() + 1);
+	    }
+	    expected.merge(word, 1, Integer::sum);
+	}
+	Assert.assertEquals(s.size(), 64);
+	Assert.assertEquals(s.getTotal(), 200000);
+	long sum = 0;
+	for (int id = 0; id < s.size(); id++) {
+	    int real = expected.get(s.getWord(id));
+	    Assert.assertTrue(s.getCount(id) >= real, s.getWord(id));
+	    Assert.assertTrue(s.getCount(id) - s.getError(id) <= real, s.getWord(id));
+	    sum += s.getCount(id);
+	}
+	Assert.assertEquals(sum, s.getTotal());
+	int[] top = s.top(8);
+	for (int i = 0; i < top.length; i++) {
+	    Assert.assertTrue(s.getWord(top[i]).matches("w[0-7]"), s.getWord(top[i]));
+	}
+	Assert.assertTrue(s.getMinCount() <= s.getTotal() / s.getCapacity());
+    }
+
+    /**
+     * words longer than the limit are not kept, many distinct words of the
+     * longest length are kept correctly while the arena is compacted.
+     */
+    @Test
+    public void testLongWords() {
+	SpaceSaving s = new SpaceSaving(16);
+	StringBuilder sb = new StringBuilder();
+	for (int i = 0; i <= SpaceSaving.MAX_WORD_LENGTH; i++) {
+	    sb.append('x');
+	}
+	Assert.assertEquals(s.add(sb, 0, sb.length()), -1);
+	Assert.assertEquals(s.add(sb.toString().toCharArray(), 0, sb.length()), -1);
+	Assert.assertEquals(s.getTotal(), 0);
+	Random random = new Random(0);
+	for (int i = 0; i < 10000; i++) {
+	    String word = i % 2 == 0 ? "frequent" : String.format("%032d", random.nextInt(1000000));
+	    int id = s.add(word, 0, word.length());
+	    Assert.assertEquals(s.getWord(id), word);
+	}
+	Assert.assertEquals(s.getWord(s.top(1)[0]), "frequent");
+	Assert.assertEquals(s.getCount(s.top(1)[0]) - s.getError(s.top(1)[0]), 5000);
+	Assert.assertEquals(s.getTotal(), 10000);
+    }
+
+    @Test
+    public void testCapacityOf() {
+	Assert.assertEquals(SpaceSaving.capacityOf(0), SpaceSaving.MIN_CAPACITY);
+	int capacity = SpaceSaving.capacityOf(1 << 20);
+	Assert.assertTrue(capacity > 1000 && capacity < 1 << 20, "capacity:" + capacity);
+	Assert.assertEquals(SpaceSaving.capacityOf(Long.MAX_VALUE), SpaceSaving.MAX_CAPACITY);
+    }
+}
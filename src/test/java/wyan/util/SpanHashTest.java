@@ -0,0 +1,34 @@
+package wyan.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SpanHashTest {
+
+    @Test
+    public void testHash() {
+	String text = "ab cde \u4e2d\u6587";
+	char[] chars = text.toCharArray();
+	for (int start = 0; start <= text.length(); start++) {
+	    for (int end = start; end <= text.length(); end++) {
+		int hash = text.substring(start, end).hashCode();
+		Assert.assertEquals(SpanHash.hash(text, start, end), hash);
+		Assert.assertEquals(SpanHash.hash(chars, start, end), hash);
+	    }
+	}
+    }
+
+    @Test
+    public void testEquals() {
+	char[] arena = "xxcdeyy".toCharArray();
+	String text = "ab cde cdf";
+	char[] chars = text.toCharArray();
+	Assert.assertTrue(SpanHash.equals(arena, 2, 3, text, 3, 6));
+	Assert.assertTrue(SpanHash.equals(arena, 2, 3, chars, 3, 6));
+	Assert.assertFalse(SpanHash.equals(arena, 2, 3, text, 7, 10));
+	Assert.assertFalse(SpanHash.equals(arena, 2, 3, chars, 7, 10));
+	Assert.assertFalse(SpanHash.equals(arena, 2, 3, text, 3, 5));
+	Assert.assertFalse(SpanHash.equals(arena, 2, 2, chars, 3, 6));
+	Assert.assertTrue(SpanHash.equals(arena, 0, 0, text, 2, 2));
+    }
+}
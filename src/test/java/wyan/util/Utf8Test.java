@@ -0,0 +1,86 @@
+package wyan.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class Utf8Test {
+
+    /**
+     * valid text should be decoded same as String.
+     */
+    @Test
+    public void testDecode() {
+	StringBuilder sb = new StringBuilder();
+	for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp += cp < 0x1000 ? 1 : 97) {
+	    if (cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE) {
+		sb.appendCodePoint(cp);
+	    }
+	}
+	String text = sb.toString();
+	byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+	char[] chars = new char[bytes.length];
+	int n = Utf8.decode(ByteBuffer.wrap(bytes), 0, bytes.length, chars, 0);
+	Assert.assertEquals(new String(chars, 0, n), text);
+    }
+
+    /**
+     * a malformed sequence is decoded as one replacement character, its size
+     * is the valid prefix.
+     */
+    @Test
+    public void testMalformed() {
+	//@formatter:off
+	byte[][] malformed = {
+	    { (byte) 0x80 },                                    // continuation
+	    { (byte) 0xc0, (byte) 0xaf },                       // overlong
+	    { (byte) 0xe0, (byte) 0x80, (byte) 0xaf },          // overlong
+	    { (byte) 0xed, (byte) 0xa0, (byte) 0x80 },          // surrogate
+	    { (byte) 0xf4, (byte) 0x90, (byte) 0x80, (byte) 0x80 }, // above U+10FFFF
+	    { (byte) 0xe4, (byte) 0xb8 },                       // cut by limit
+	    { (byte) 0xe4, (byte) 0xb8, 'a' },                  // truncated
+	    { (byte) 0xf0, (byte) 0x9f, (byte) 0x98 },          // truncated
+	    { (byte) 0xff }, };
+	int[] sizes = { 1, 1, 1, 3, 1, 2, 2, 3, 1 };
+	//@formatter:on
+	for (int i = 0; i < malformed.length; i++) {
+	    byte[] bytes = malformed[i];
+	    int packed = Utf8.next(ByteBuffer.wrap(bytes), 0, bytes.length);
+	    Assert.assertEquals(Utf8.codePoint(packed), Utf8.REPLACEMENT);
+	    Assert.assertEquals(Utf8.size(packed), sizes[i]);
+	}
+	int packed = Utf8.next(ByteBuffer.wrap(new byte[] { (byte) 0xe4, (byte) 0xb8, (byte) 0xad }), 0, 3);
+	Assert.assertEquals(Utf8.codePoint(packed), 0x4e2d);
+	Assert.assertEquals(Utf8.size(packed), 3);
+    }
+
+    /**
+     * random bytes should be decoded same as a charset decoder replacing
+     * malformed input.
+     */
+    @Test
+    public void testSameAsDecoder() throws CharacterCodingException {
+	int[] samples = { 'a', ' ', 0x80, 0x8f, 0x90, 0x9f, 0xa0, 0xbf, 0xc0, 0xc2, 0xdf, 0xe0, 0xe4, 0xed, 0xef,
+		0xf0, 0xf4, 0xf5, 0xff };
+	Random random = new Random(0);
+	CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+		.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	for (int round = 0; round < 20000; round++) {
+	    byte[] bytes = new byte[random.nextInt(8) + 1];
+	    for (int i = 0; i < bytes.length; i++) {
+		bytes[i] = (byte) samples[random.nextInt(samples.length)];
+	    }
+	    char[] chars = new char[bytes.length];
+	    int n = Utf8.decode(ByteBuffer.wrap(bytes), 0, bytes.length, chars, 0);
+	    Assert.assertEquals(new String(chars, 0, n), decoder.decode(ByteBuffer.wrap(bytes)).toString(),
+		    Arrays.toString(bytes));
+	}
+    }
+}